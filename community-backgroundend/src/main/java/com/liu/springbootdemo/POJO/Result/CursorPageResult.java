@@ -0,0 +1,20 @@
+package com.liu.springbootdemo.POJO.Result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，没有总数和页码
+ * nextCursor原样传回即可取下一页，hasMore为false时nextCursor为null
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResult<T> {
+    private List<T> results;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,24 @@
+package com.liu.springbootdemo.POJO.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+@Schema(description = "草稿自动保存请求 DTO，每次传编辑器里的完整内容，草稿允许不完整")
+public class DraftDTO {
+
+    @Size(max = 50, message = "标题不能超过{max}个字符")
+    @Schema(description = "帖子标题")
+    private String title;   //外显标题
+    @Size(max = 50000, message = "内容不能超过{max}个字符")
+    @Schema(description = "帖子内容")
+    private String content; // 内容
+    @Size(max = 300, message = "简介不能超过{max}个字符")
+    @Schema(description = "帖子摘要/简介")
+    private String summary; // 帖子摘要/简介
+    @Schema(description = "分区ID，新建草稿必传，自动保存时不传表示不改")
+    private Long categoryId;    //分区id
+    @Size(max = 255, message = "链接不能超过{max}字符长度")
+    private String coverImage; //封面图URL
+}
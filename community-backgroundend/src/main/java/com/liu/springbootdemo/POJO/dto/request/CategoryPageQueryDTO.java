@@ -23,6 +23,9 @@ public class CategoryPageQueryDTO {
     @NotNull(message = "每页数量不能为空")
     private Integer pageSize;
 
+    // 是否查总数，false时不COUNT，total返回null
+    private boolean count = true;
+
     // 手动重写参数set，实现自动回正逻辑
     public void setPage(Integer page){
         // 空和过小情况
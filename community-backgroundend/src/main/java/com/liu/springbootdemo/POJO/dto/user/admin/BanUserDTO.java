@@ -0,0 +1,18 @@
+package com.liu.springbootdemo.POJO.dto.user.admin;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 管理员封禁用户请求体
+ */
+@Data
+public class BanUserDTO {
+    @NotBlank(message = "封禁原因不能为空")
+    @Size(max = 255,message = "阿巴阿巴，有点长了{max}字原因")
+    private String banReason;   //封禁原因
+    private LocalDateTime banUntil;    //封禁截止时间，为空则永久
+}
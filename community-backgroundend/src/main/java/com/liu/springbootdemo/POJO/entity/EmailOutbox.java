@@ -0,0 +1,26 @@
+package com.liu.springbootdemo.POJO.entity;
+
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * email_outbox表的实体类，待发送的邮件
+ */
+@Data
+public class EmailOutbox {
+    private Long id;
+    private String toAddress;   //收件人
+    private String subject;     //标题
+    private String content;     //正文，发送成功后清空
+    private int status;         //OutboxStatus
+    private int attempts;       //已尝试发送次数
+    private LocalDateTime nextAttemptTime;  //最早可发送时间，重试退避用
+    private String owner;       //认领该邮件的批次标识
+    private LocalDateTime claimTime;    //认领时间
+    private String lastError;   //最近一次失败原因
+    private LocalDateTime createTime;
+    private LocalDateTime sentTime;
+}
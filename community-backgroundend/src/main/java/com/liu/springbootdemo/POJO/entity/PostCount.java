@@ -0,0 +1,14 @@
+package com.liu.springbootdemo.POJO.entity;
+
+import lombok.Data;
+
+/**
+ * 帖子数分组统计行，按作者、分区、状态分组，校准帖子计数用
+ */
+@Data
+public class PostCount {
+    private Long userId;
+    private Long categoryId;
+    private int status;
+    private long total;
+}
@@ -0,0 +1,23 @@
+package com.liu.springbootdemo.POJO.entity;
+
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * post_revisions表的实体类，帖子的一个历史版本
+ * 正文每隔若干版存一次全文，其余存相对上一版的差量(TextDelta)，标题很短每版都存原文
+ */
+@Data
+public class PostRevision {
+    private Long id;
+    private Long postId;
+    private int version;        //版本号，每个帖子从1开始连续递增
+    private Long editorId;      //修改人，绕过修改接口的改动补记时为null
+    private boolean isSnapshot; //payload是全文还是差量
+    private String title;       //该版本的标题
+    private String payload;     //全文或相对上一版的差量
+    private LocalDateTime createTime;
+}
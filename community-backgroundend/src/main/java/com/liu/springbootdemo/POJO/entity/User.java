@@ -29,6 +29,7 @@ public class User {
     private boolean isBanned;  //是否被封禁
     private String banReason;   //封禁原因
     private LocalDateTime banUntil;    //封禁截止时间
+    private int tokenVersion;   //Token版本号，封禁、改角色时+1，使已签发的Token失效
 
 
 }
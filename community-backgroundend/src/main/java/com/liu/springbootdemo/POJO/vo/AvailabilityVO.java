@@ -0,0 +1,13 @@
+package com.liu.springbootdemo.POJO.vo;
+
+import lombok.Data;
+
+/**
+ * 用户名/邮箱可用性，未查询的项为null
+ */
+@Data
+public class AvailabilityVO {
+
+    private Boolean usernameAvailable;
+    private Boolean emailAvailable;
+}
@@ -0,0 +1,22 @@
+package com.liu.springbootdemo.POJO.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Schema(name = "草稿视图对象 VO", description = "草稿的最新内容，可能还只在缓冲里没写库")
+public class DraftVO {
+
+    private Long postId;    //草稿即状态为草稿的帖子，用帖子id
+    private String title;   //外显标题
+    private String content; // 内容
+    private String summary; // 帖子摘要/简介
+    private Long categoryId;    //分区id
+    private String coverImage; //封面图URL
+
+    private LocalDateTime savedAt;  //最后一次保存时间
+    @Schema(description = "是否已写库，false表示最新内容还在缓冲里，稍后自动写库")
+    private boolean persisted;
+}
@@ -0,0 +1,18 @@
+package com.liu.springbootdemo.POJO.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Schema(name = "帖子历史版本 VO", description = "版本列表里不带正文，查看单个版本时才还原正文")
+public class PostRevisionVO {
+
+    private Long postId;
+    private int version;    //版本号，从1开始
+    private Long editorId;  //修改人id，未知为null
+    private String title;   //该版本的标题
+    private String content; //该版本的正文，列表里为null
+    private LocalDateTime createTime;   //该版本的时间
+}
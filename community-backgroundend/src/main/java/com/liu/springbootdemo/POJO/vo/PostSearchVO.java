@@ -0,0 +1,13 @@
+package com.liu.springbootdemo.POJO.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(name = "帖子搜索结果 VO", description = "帖子概要加上命中关键词的高亮片段，高亮片段已做HTML转义，关键词用<em>包裹")
+public class PostSearchVO {
+
+    private PostSummaryVO post;     //帖子概要，同列表接口
+    private String titleHighlight;  //高亮后的标题
+    private String contentHighlight;//正文里命中关键词的片段，正文没命中为null
+}
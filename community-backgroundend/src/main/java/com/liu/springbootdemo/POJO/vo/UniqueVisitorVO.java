@@ -0,0 +1,14 @@
+package com.liu.springbootdemo.POJO.vo;
+
+import lombok.Data;
+
+/**
+ * 独立访客数(近似值，误差约0.81%)
+ */
+@Data
+public class UniqueVisitorVO {
+
+    private Long today;
+    private Long last7Days;
+    private Long last30Days;
+}
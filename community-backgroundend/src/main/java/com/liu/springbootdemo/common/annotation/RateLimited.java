@@ -0,0 +1,56 @@
+package com.liu.springbootdemo.common.annotation;
+
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.enums.LimitDimension;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口限流：滑动窗口内最多放行permits次，超出抛对应ErrorCode(默认429)
+ * 可在同一方法上叠加多条，例如按IP一条、按账号一条，全部通过才执行
+ * 例：@RateLimited(dimension = LimitDimension.PARAM, key = "#email", permits = 1, window = 60)
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimited {
+
+    /**
+     * 限流名，组成Redis key，默认为 类名.方法名
+     */
+    String name() default "";
+
+    /**
+     * 按什么区分调用方
+     */
+    LimitDimension dimension() default LimitDimension.IP;
+
+    /**
+     * dimension为PARAM时取值的SpEL表达式，如 "#email"
+     */
+    String key() default "";
+
+    /**
+     * 窗口内允许的次数
+     */
+    int permits();
+
+    /**
+     * 窗口长度
+     */
+    long window();
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * 超限时抛出的错误码
+     */
+    ErrorCode errorCode() default ErrorCode.TOO_MANY_REQUESTS;
+}
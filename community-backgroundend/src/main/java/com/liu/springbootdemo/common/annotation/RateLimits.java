@@ -0,0 +1,17 @@
+package com.liu.springbootdemo.common.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @RateLimited 的容器注解，同一方法写多个@RateLimited时由编译器自动生成，不用手写
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimits {
+    RateLimited[] value();
+}
@@ -0,0 +1,98 @@
+package com.liu.springbootdemo.common.aspect;
+
+import com.liu.springbootdemo.common.annotation.RateLimited;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.utils.IpUtil;
+import com.liu.springbootdemo.common.utils.SecurityUtil;
+import com.liu.springbootdemo.service.RateLimiterService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @RateLimited 的切面：方法执行前逐条检查限流，任意一条超限即抛异常，不进入业务逻辑
+ */
+@Aspect
+@Component
+@Slf4j
+public class RateLimitAspect {
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+    // 解析好的SpEL，按表达式字符串缓存
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Before("@annotation(com.liu.springbootdemo.common.annotation.RateLimited) " +
+            "|| @annotation(com.liu.springbootdemo.common.annotation.RateLimits)")
+    public void checkRateLimit(JoinPoint joinPoint) {
+        Method method = AopUtils.getMostSpecificMethod(
+                ((MethodSignature) joinPoint.getSignature()).getMethod(), joinPoint.getTarget().getClass());
+        for (RateLimited limit : AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimited.class)) {
+            String caller = resolveCaller(limit, method, joinPoint.getArgs());
+            if (caller == null) {
+                continue;   // 取不到维度值(如参数为空)时不限流，交给业务校验报错
+            }
+            String name = StringUtils.hasText(limit.name())
+                    ? limit.name()
+                    : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            String key = name + ":" + limit.dimension().name().toLowerCase(Locale.ROOT) + ":" + caller;
+            long waitMillis = rateLimiterService.tryAcquire(key, limit.permits(), limit.unit().toMillis(limit.window()));
+            if (waitMillis > 0) {
+                Counter.builder("rate.limit.rejected").tag("name", name).register(meterRegistry).increment();
+                long waitSeconds = (waitMillis + 999) / 1000;
+                log.info("限流[{}]拒绝：{}，{}秒后可重试", name, caller, waitSeconds);
+                throw new BusinessException(limit.errorCode(),
+                        limit.errorCode().getMessage() + "，请" + waitSeconds + "秒后重试",
+                        Map.of("retryAfterSeconds", waitSeconds));
+            }
+        }
+    }
+
+    // 按维度取调用方标识
+    private String resolveCaller(RateLimited limit, Method method, Object[] args) {
+        switch (limit.dimension()) {
+            case USER:
+                Long userId = SecurityUtil.getCurrentUserId();
+                if (userId != null) {
+                    return userId.toString();
+                }
+                return IpUtil.getCurrentClientIp();     // 未登录退化为按IP
+            case IP:
+                return IpUtil.getCurrentClientIp();
+            case PARAM:
+                Expression expression = expressions.computeIfAbsent(limit.key(), parser::parseExpression);
+                Object value = expression.getValue(new MethodBasedEvaluationContext(null, method, args, nameDiscoverer));
+                if (value == null || !StringUtils.hasText(value.toString())) {
+                    return null;
+                }
+                return value.toString().trim().toLowerCase(Locale.ROOT);   // 邮箱、账号不区分大小写
+            default:
+                return null;
+        }
+    }
+}
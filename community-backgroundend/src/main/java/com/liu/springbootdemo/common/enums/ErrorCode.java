@@ -32,6 +32,7 @@ public enum ErrorCode {
     SYSTEM_TIMEOUT("A0003", "系统执行超时", HttpStatus.REQUEST_TIMEOUT),
     SYSTEM_RESOURCE_ERROR("A0004", "系统资源异常", HttpStatus.INTERNAL_SERVER_ERROR),
     SQL_ERROR("A0005", "数据库操作异常", HttpStatus.INTERNAL_SERVER_ERROR),
+    TOO_MANY_REQUESTS("A0006", "请求过于频繁，请稍后再试", HttpStatus.TOO_MANY_REQUESTS),
 
     // ==================== 用户相关错误 10000-19999 ====================
     // 用户基本错误 10001-10099
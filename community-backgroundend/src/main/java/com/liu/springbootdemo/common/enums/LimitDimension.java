@@ -0,0 +1,10 @@
+package com.liu.springbootdemo.common.enums;
+
+/**
+ * 限流维度
+ */
+public enum LimitDimension {
+    USER,   //按登录用户id，未登录时退化为按IP
+    IP,     //按客户端IP
+    PARAM   //按方法参数，用SpEL取值，如邮箱、账号
+}
@@ -0,0 +1,17 @@
+package com.liu.springbootdemo.common.enums;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum OutboxStatus {
+    PENDING(0),     //待发送(含等待重试)
+    SENDING(1),     //已被某个实例认领，发送中
+    SENT(2),        //已发送
+    FAILED(3);      //重试次数用完，放弃
+
+    private final int status;
+
+}
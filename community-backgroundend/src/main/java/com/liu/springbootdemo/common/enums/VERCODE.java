@@ -7,9 +7,29 @@ import lombok.Getter;
 @Getter
 @AllArgsConstructor
 public enum VERCODE {
-    REGISTER("注册", "VERCODE:REGISTER:", 10), //注册验证码，10分钟过期
-    RESET_PASSWORD("重置密码", "VERCODE:RESET_PASSWORD:", 5); //重置密码验证码，5分钟过期
+    REGISTER("注册", "VERCODE:REGISTER:", 10, 60, 10, 30), //注册验证码，10分钟过期，60秒冷却，每邮箱每天10次、每IP每天30次
+    RESET_PASSWORD("重置密码", "VERCODE:RESET_PASSWORD:", 5, 60, 5, 20); //重置密码验证码，5分钟过期
     private final String codeType;
-    private final String redisKey;
+    private final String redisKey;  //验证码key前缀，冷却、计数key也在此命名空间下
     private final long timeoutMinutes;
+    private final long cooldownSeconds;     //同一邮箱两次发送的最短间隔
+    private final int dailyLimitPerEmail;   //每个邮箱每天最多发送次数
+    private final int dailyLimitPerIp;      //每个IP每天最多发送次数
+
+    /**
+     * 根据验证码种类说明获取枚举
+     * @param codeType 种类说明，如"注册"，为空时按注册处理
+     * @return VERCODE，找不到返回null
+     */
+    public static VERCODE fromCodeType(String codeType) {
+        if (codeType == null) {
+            return REGISTER;
+        }
+        for (VERCODE vercode : values()) {
+            if (vercode.codeType.equals(codeType)) {
+                return vercode;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,41 @@
+package com.liu.springbootdemo.common.security;
+
+import com.liu.springbootdemo.POJO.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 认证主体：放进SecurityContext里的当前登录用户
+ * 无状态模式下直接由JWT的Claims构建，不查数据库；
+ * 携带userId、角色和Token版本号，Service层拿身份时不必再回表
+ */
+@Getter
+@AllArgsConstructor
+public class LoginUser implements UserDetails {
+
+    private final Long id;          //用户id
+    private final String username;  //用户名
+    private final String password;  //密码哈希，从Token构建时为null
+    private final String role;      //用户角色，如ROLE_USER
+    private final int tokenVersion; //签发Token时的用户Token版本号
+
+    /**
+     * 从数据库User构建，登录签发Token和兼容旧Token的回表认证使用
+     */
+    public static LoginUser from(User user) {
+        return new LoginUser(user.getId(), user.getUsername(), user.getPassword(), user.getRole(), user.getTokenVersion());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        //单用户单角色，多角色时再改为列表
+        return List.of(new SimpleGrantedAuthority(role));
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.liu.springbootdemo.common.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * 缓存序列化工具，对象和Redis里的JSON字符串互转
+ * 不用全局的JacksonObjectMapper：它的时间格式只到分钟，存进缓存再读出来会丢秒
+ */
+public class CacheJsonUtil {
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())   //LocalDateTime按ISO格式完整保存
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);  //实体加减字段后旧缓存依旧能读
+
+    public static String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("缓存对象序列化失败：" + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("缓存反序列化失败：" + type.getSimpleName(), e);
+        }
+    }
+
+    public static <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("缓存反序列化失败：" + type.getType().getTypeName(), e);
+        }
+    }
+}
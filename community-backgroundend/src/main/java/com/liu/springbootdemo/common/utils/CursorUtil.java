@@ -0,0 +1,129 @@
+package com.liu.springbootdemo.common.utils;
+
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 游标分页的游标编解码
+ * 游标是上一页最后一行的排序键，Base64编码后对前端不透明，前端原样传回即可
+ * 三种格式：t|修改时间|id (按修改时间倒序的列表)、c|分区id|是否置顶|id (分区内置顶优先、按id倒序的列表)、
+ * s|相关度|id (搜索结果，按相关度倒序、同分按id倒序)
+ */
+public class CursorUtil {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 按(修改时间, id)排序的游标
+     */
+    public record TimeCursor(LocalDateTime updateTime, Long id) {
+    }
+
+    /**
+     * 分区内按(是否置顶, id)排序的游标
+     */
+    public record CategoryCursor(boolean pinned, Long id) {
+    }
+
+    /**
+     * 搜索结果按(相关度, id)排序的游标
+     */
+    public record SearchCursor(float score, Long id) {
+    }
+
+    public static String encodeTime(LocalDateTime updateTime, Long id) {
+        return encode("t|" + updateTime + "|" + id);
+    }
+
+    /**
+     * @param cursor 前端传回的游标，为空表示第一页
+     * @return 游标，第一页返回null
+     */
+    public static TimeCursor decodeTime(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        String[] parts = decode(cursor);
+        try {
+            if (parts.length == 3 && "t".equals(parts[0])) {
+                return new TimeCursor(LocalDateTime.parse(parts[1]), Long.valueOf(parts[2]));
+            }
+        } catch (RuntimeException ignored) {
+            // 落到下面统一报错
+        }
+        throw invalid();
+    }
+
+    public static String encodeCategory(Long categoryId, boolean pinned, Long id) {
+        return encode("c|" + categoryId + "|" + (pinned ? 1 : 0) + "|" + id);
+    }
+
+    /**
+     * @param cursor 前端传回的游标，为空表示第一页
+     * @param categoryId 当前查询的分区，游标必须是该分区的
+     * @return 上一页最后一条的排序键，第一页返回null
+     */
+    public static CategoryCursor decodeCategory(String cursor, Long categoryId) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        String[] parts = decode(cursor);
+        try {
+            if (parts.length == 4 && "c".equals(parts[0]) && categoryId.equals(Long.valueOf(parts[1]))
+                    && ("0".equals(parts[2]) || "1".equals(parts[2]))) {
+                return new CategoryCursor("1".equals(parts[2]), Long.valueOf(parts[3]));
+            }
+        } catch (RuntimeException ignored) {
+            // 落到下面统一报错
+        }
+        throw invalid();
+    }
+
+    public static String encodeSearch(float score, Long id) {
+        return encode("s|" + score + "|" + id);
+    }
+
+    /**
+     * @param cursor 前端传回的游标，为空表示第一页
+     * @return 上一页最后一条的相关度和id，第一页返回null
+     */
+    public static SearchCursor decodeSearch(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        String[] parts = decode(cursor);
+        try {
+            if (parts.length == 3 && "s".equals(parts[0])) {
+                float score = Float.parseFloat(parts[1]);
+                if (Float.isFinite(score)) {    // 篡改成NaN、Infinity的searchAfter会跳过所有结果
+                    return new SearchCursor(score, Long.valueOf(parts[2]));
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // 落到下面统一报错
+        }
+        throw invalid();
+    }
+
+    private static String encode(String raw) {
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            return new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    private static BusinessException invalid() {
+        return new BusinessException(ErrorCode.PARAM_ERROR, "分页游标无效，请从第一页重新加载");
+    }
+}
@@ -0,0 +1,91 @@
+package com.liu.springbootdemo.common.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+
+@Component
+public class IpUtil {
+
+    private static final String UNKNOWN = "unknown";
+
+    // 受信任的反向代理，只有连接来自这些地址时才看X-Forwarded-For/X-Real-IP，否则客户端随便填个头就能绕过按IP的限流
+    private static volatile List<IpAddressMatcher> trustedProxies = List.of();
+
+    /**
+     * 受信任的反向代理地址，支持CIDR，为空时一律取连接地址
+     */
+    @Value("${community.client-ip.trusted-proxies:}")
+    public void setTrustedProxies(List<String> proxies) {
+        trustedProxies = proxies.stream()
+                .filter(StringUtils::hasText)
+                .map(proxy -> new IpAddressMatcher(proxy.trim()))
+                .toList();
+    }
+
+    /**
+     * 获取客户端真实IP
+     * 连接来自受信任的代理时，从X-Forwarded-For右边往左取第一个不是受信任代理的地址(左边的部分客户端可以伪造)；
+     * 没有该头时取X-Real-IP；连接不是来自受信任的代理时直接取连接地址
+     * @param request 请求
+     * @return 客户端IP
+     */
+    public static String getClientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (StringUtils.hasText(forwarded) && !UNKNOWN.equalsIgnoreCase(forwarded)) {
+            String[] hops = forwarded.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (StringUtils.hasText(hop) && !UNKNOWN.equalsIgnoreCase(hop) && !isTrustedProxy(hop)) {
+                    return hop;
+                }
+            }
+            String first = hops.length > 0 ? hops[0].trim() : "";
+            return StringUtils.hasText(first) ? first : remoteAddr;     // 全是受信任的代理，取最左边的
+        }
+        String ip = request.getHeader("X-Real-IP");
+        if (StringUtils.hasText(ip) && !UNKNOWN.equalsIgnoreCase(ip)) {
+            return ip.trim();
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 获取当前请求的客户端IP
+     * @return 客户端IP，非请求线程返回null
+     */
+    public static String getCurrentClientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            return getClientIp(servletAttributes.getRequest());
+        }
+        return null;
+    }
+
+    private static boolean isTrustedProxy(String ip) {
+        if (ip == null) {
+            return false;
+        }
+        for (IpAddressMatcher matcher : trustedProxies) {
+            try {
+                if (matcher.matches(ip)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false;   // 头里填的不是合法IP
+            }
+        }
+        return false;
+    }
+}
@@ -1,17 +1,31 @@
 package com.liu.springbootdemo.common.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.liu.springbootdemo.common.security.LoginUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
@@ -19,21 +33,72 @@ import java.util.function.Function;
 @Data
 public class JwtUtil {
 
+    // 无状态认证需要的自定义Claim名
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "tv";
+
     private String SECRET_KEY;
 
     // jwtToken过期时间
     private long EXPIRATION_TIME; //24小时*7天毫秒
 
+    // 已验签Token缓存的最大条目数，超出按Caffeine的W-TinyLFU策略淘汰
+    private long cacheMaximumSize = 10000;
+
+    // 认证模式：true为无状态，直接用Token里的uid/role/tv构建主体；false为每次请求回表loadUserByUsername
+    private boolean stateless = true;
+
+    // 以下为启动时构建一次的对象，不参与配置绑定
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private SecretKey signingKey;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private JwtParser jwtParser;
+    /**
+     * 已验签Token缓存：key为Token的SHA-256摘要，value为解析出的Claims
+     * 每个条目在Token自身的exp时刻过期，过期后再访问会重新走验签，由jjwt抛出ExpiredJwtException
+     */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private Cache<String, Claims> verifiedTokenCache;
+
+    /**
+     * 配置绑定完成后构建密钥、解析器和缓存，避免每次请求都重新从字符串生成SecretKey
+     */
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey) // 使用密钥验证签名
+                .build();   // JwtParser线程安全，可复用
+        verifiedTokenCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long remainMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainMillis, 0));
+                    }
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     // 1. 验证Token是否有效
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        // 检查用户名是否匹配，并且Token没有过期
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateToken(parseToken(token), userDetails);
     }
 
-    // ⬇️检查Token是否已过期
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // 1.1 用已解析的Claims验证，过滤器里只解析一次后复用
+    public Boolean validateToken(Claims claims, UserDetails userDetails) {
+        // 检查用户名是否匹配，并且Token没有过期
+        return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
     }
 
     // ⬇️从Token中提取用户名
@@ -48,15 +113,29 @@ public class JwtUtil {
 
     // ⬇️核心提取逻辑：从Token中提取指定的Claim
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseToken(token);
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * 解析并验签Token，同一个Token在过期前只做一次HMAC验签和Base64/JSON解析
+     * 签名错误、格式错误、已过期等情况由jjwt抛出对应的JwtException，不会进入缓存
+     * @param token 原始JWT
+     * @return 已验签的Claims（不可变，可在线程间共享）
+     */
+    public Claims parseToken(String token) {
+        String digest = digest(token);
+        Claims claims = verifiedTokenCache.getIfPresent(digest);
+        if (claims == null) {
+            claims = extractAllClaims(token);
+            verifiedTokenCache.put(digest, claims);
+        }
+        return claims;
+    }
+
     // 解析Token，获取所有的Claims
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey()) // 使用密钥验证签名
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -66,9 +145,30 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         // 您可以在这里添加更多的自定义信息到Token中，比如用户的角色
         claims.put("roles", userDetails.getAuthorities());
+        // 无状态认证所需信息，过滤器据此构建主体而不查库
+        if (userDetails instanceof LoginUser loginUser) {
+            claims.put(CLAIM_USER_ID, loginUser.getId());
+            claims.put(CLAIM_ROLE, loginUser.getRole());
+            claims.put(CLAIM_TOKEN_VERSION, loginUser.getTokenVersion());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
+    /**
+     * 从已验签的Claims构建认证主体
+     * @param claims 已验签的Claims
+     * @return LoginUser，旧版Token没有uid等Claim时返回null，交给回表认证兼容
+     */
+    public LoginUser toLoginUser(Claims claims) {
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Integer tokenVersion = claims.get(CLAIM_TOKEN_VERSION, Integer.class);
+        if (userId == null || role == null || tokenVersion == null) {
+            return null;
+        }
+        return new LoginUser(userId, claims.getSubject(), null, role, tokenVersion);
+    }
+
     // ⬇️创建Token的具体实现
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
@@ -76,14 +176,18 @@ public class JwtUtil {
                 .subject(subject) // 设置主题，通常是用户名
                 .issuedAt(new Date(System.currentTimeMillis())) // 设置签发时间
                 .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME)) // 设置过期时间
-                .signWith(getSigningKey()) // 使用指定的密钥和算法进行签名
+                .signWith(signingKey) // 使用指定的密钥和算法进行签名
                 .compact();
     }
 
-    // ⬇️获取用于签名的密钥对象
-    private SecretKey getSigningKey() {
-        // 将我们定义的字符串密钥，转换为加密算法需要的SecretKey对象
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // ⬇️Token摘要，作为缓存key，不在内存里长期保存原始Token
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM不支持SHA-256", e);
+        }
     }
 
 
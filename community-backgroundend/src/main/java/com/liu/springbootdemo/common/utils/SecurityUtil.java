@@ -1,35 +1,93 @@
 package com.liu.springbootdemo.common.utils;
 
 import com.liu.springbootdemo.POJO.entity.User;
-import com.liu.springbootdemo.mapper.UserMapper;
+import com.liu.springbootdemo.common.enums.UserRole;
+import com.liu.springbootdemo.common.security.LoginUser;
+import com.liu.springbootdemo.service.UserCacheService;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 public class SecurityUtil {
-    private static UserMapper staticUserMapper;
+    private static UserCacheService staticUserCacheService;
+
+    // 当前请求已加载的完整User，存放在request attribute里，请求结束自动释放
+    private static final String CURRENT_USER_ATTRIBUTE = SecurityUtil.class.getName() + ".CURRENT_USER";
 
     @Autowired
-    private UserMapper userMapper;
+    private UserCacheService userCacheService;
 
     @PostConstruct
     public void init(){
-        staticUserMapper = userMapper;
+        staticUserCacheService = userCacheService;
+    }
+
+    /**
+     * 获取当前登录用户的认证主体，直接来自Token的Claims，不查数据库
+     * 只需要id、用户名、角色时优先用这个
+     * @return 已登录返回LoginUser，游客返回null
+     */
+    public static LoginUser getLoginUser(){
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication != null && authentication.getPrincipal() instanceof LoginUser loginUser){
+            return loginUser;
+        }
+        return null;    // 未登录时principal为"anonymousUser"字符串
+    }
+
+    /**
+     * 获取当前登录用户id
+     * @return 用户id，游客返回null
+     */
+    public static Long getCurrentUserId(){
+        LoginUser loginUser = getLoginUser();
+        return loginUser == null ? null : loginUser.getId();
     }
 
     /**
-     * 从Security中获取正在登录的用户,用的较低级别的安全注入，可以在任何地方使用，但是会耦合Security，测试不方便
+     * 当前登录用户是否管理员
+     */
+    public static boolean isAdmin(){
+        LoginUser loginUser = getLoginUser();
+        return loginUser != null && UserRole.ADMIN.getRoleName().equals(loginUser.getRole());
+    }
+
+    /**
+     * 从Security中获取正在登录的完整用户信息(头像、简介等)，走用户缓存，不含密码
+     * 同一个请求内只查一次，结果缓存在请求域里；只要身份信息时请用getLoginUser()
      * @return  如果有就返回currentUser，否则为空
      */
     public static User getCurrentUser(){
-        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        LoginUser loginUser = getLoginUser();
+        if(loginUser == null){
+            return null;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes == null){// 非请求线程(异步任务等)，无处缓存，直接查
+            return staticUserCacheService.getById(loginUser.getId());
+        }
+        User currentUser = (User) attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(currentUser == null){
+            currentUser = staticUserCacheService.getById(loginUser.getId());
+            if(currentUser != null){
+                attributes.setAttribute(CURRENT_USER_ATTRIBUTE, currentUser, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        return currentUser;
+    }
 
-        if(principal instanceof UserDetails userDetails){
-            return staticUserMapper.findByUsername(userDetails.getUsername());
+    /**
+     * 当前请求内用户信息被修改后调用，下次getCurrentUser()重新加载
+     */
+    public static void clearCurrentUser(){
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes != null){
+            attributes.removeAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
         }
-        return null;
     }
 }
@@ -0,0 +1,54 @@
+package com.liu.springbootdemo.common.utils;
+
+/**
+ * 文本差量编解码，帖子修订历史用
+ * 只记新旧文本不同的那一段：去掉公共前缀和公共后缀，剩下中间替换成什么
+ * 编辑器里的一次修改大多集中在一处，差量只有改动那几个字；改动分散在首尾时差量接近全文，由调用方改存全文
+ * 格式：前缀长度,后缀长度,中间的新文本；前后缀按完整字符切，中间段不会有落单的代理字符
+ */
+public class TextDelta {
+
+    private TextDelta() {
+    }
+
+    /**
+     * 计算从base到target的差量
+     * @param base 旧文本
+     * @param target 新文本
+     * @return 差量
+     */
+    public static String diff(String base, String target) {
+        int max = Math.min(base.length(), target.length());
+        int prefix = 0;
+        while (prefix < max && base.charAt(prefix) == target.charAt(prefix)) {
+            prefix++;
+        }
+        // 不能从代理对中间切开，否则中间段以半个字符开头，写进utf8mb4列会变成?
+        if (prefix > 0 && Character.isHighSurrogate(target.charAt(prefix - 1))) {
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(target.charAt(target.length() - suffix))) {
+            suffix--;
+        }
+        return prefix + "," + suffix + "," + target.substring(prefix, target.length() - suffix);
+    }
+
+    /**
+     * 把差量应用到base上还原新文本
+     * @param base 计算差量时的旧文本
+     * @param delta diff的结果
+     * @return 新文本
+     */
+    public static String apply(String base, String delta) {
+        int first = delta.indexOf(',');
+        int second = delta.indexOf(',', first + 1);
+        int prefix = Integer.parseInt(delta.substring(0, first));
+        int suffix = Integer.parseInt(delta.substring(first + 1, second));
+        return base.substring(0, prefix) + delta.substring(second + 1) + base.substring(base.length() - suffix);
+    }
+}
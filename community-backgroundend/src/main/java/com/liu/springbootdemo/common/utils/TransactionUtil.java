@@ -0,0 +1,25 @@
+package com.liu.springbootdemo.common.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+
+    /**
+     * 在事务里调用时等提交后再执行，回滚了就不执行；不在事务里直接执行
+     * 用于删缓存、改计数这类写Redis的操作：提交前删缓存，并发的读请求会把还没提交的旧数据重新写进缓存
+     * @param action 要执行的操作，自己处理异常，提交后抛出的异常会传给调用方
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.liu.springbootdemo.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.context.event.EventListener;
 
 /**
  * Redis配置类
  * 防止乱码
  */
+@Slf4j
 @Configuration
 public class RedisConfig {
 
@@ -32,4 +39,94 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * 滑动窗口限流脚本，见resources/lua/sliding_window.lua
+     */
+    @Bean
+    public RedisScript<Long> slidingWindowScript() {
+        return RedisScript.of(new ClassPathResource("lua/sliding_window.lua"), Long.class);
+    }
+
+    /**
+     * 登录前检查锁定并占用一次尝试机会，见resources/lua/login_attempt.lua
+     */
+    @Bean
+    public RedisScript<Long> loginAttemptScript() {
+        return RedisScript.of(new ClassPathResource("lua/login_attempt.lua"), Long.class);
+    }
+
+    /**
+     * 签发验证码(冷却、日上限、写入)脚本，见resources/lua/issue_code.lua
+     */
+    @Bean
+    public RedisScript<Long> issueCodeScript() {
+        return RedisScript.of(new ClassPathResource("lua/issue_code.lua"), Long.class);
+    }
+
+    /**
+     * 开始一轮浏览量写库(改名+记批次号)，见resources/lua/view_flush_begin.lua
+     */
+    @Bean
+    public RedisScript<String> viewFlushBeginScript() {
+        return RedisScript.of(new ClassPathResource("lua/view_flush_begin.lua"), String.class);
+    }
+
+    /**
+     * 比对令牌后释放锁，见resources/lua/release_lock.lua
+     */
+    @Bean
+    public RedisScript<Long> releaseLockScript() {
+        return RedisScript.of(new ClassPathResource("lua/release_lock.lua"), Long.class);
+    }
+
+    /**
+     * 比对令牌后续期锁，见resources/lua/renew_lock.lua
+     */
+    @Bean
+    public RedisScript<Long> renewLockScript() {
+        return RedisScript.of(new ClassPathResource("lua/renew_lock.lua"), Long.class);
+    }
+
+    /**
+     * Redis发布订阅的监听容器，多实例间广播本地缓存失效用
+     * 各Service自己往容器里注册频道监听
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        // 容器随上下文自动启动时Redis连不上会导致整个应用启动失败，关掉自动启动，改为就绪后在后台启动
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return false;
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 应用就绪后在后台启动监听容器，Redis暂不可用则每30秒重试，不阻塞启动
+     * 启动成功后的断线重连由容器自己负责
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMessageListenerContainer(ApplicationReadyEvent event) {
+        RedisMessageListenerContainer container = event.getApplicationContext().getBean(RedisMessageListenerContainer.class);
+        Thread starter = new Thread(() -> {
+            while (!container.isRunning() && event.getApplicationContext().isActive()) {
+                try {
+                    container.start();
+                } catch (Exception e) {
+                    log.warn("Redis消息监听启动失败，30秒后重试：{}", e.getMessage());
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }, "redis-listener-starter");
+        starter.setDaemon(true);
+        starter.start();
+    }
+}
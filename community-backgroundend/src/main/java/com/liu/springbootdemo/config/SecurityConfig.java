@@ -29,7 +29,7 @@ public class SecurityConfig {
         // 开始配置授权请求
         http.authorizeHttpRequests(authorize -> authorize
                 // 白名单：对登录和注册路径的请求，允许所有形式访问
-                .requestMatchers("/api/auth/register","/api/auth/login").permitAll()
+                .requestMatchers("/api/auth/register","/api/auth/login","/api/auth/availability").permitAll()
                 // Swagger/Knife4j/静态资源 白名单
                 .requestMatchers(
                         "/doc.html",
@@ -45,11 +45,15 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET,
                         "/api/posts",
                         "/api/posts/*", //获取单个帖子，根据帖子id
+                        "/api/posts/category/*/cursor", //分区帖子列表
                         "/api/comments/*/comments",    // 允许Get方法获取单个帖子所有评论
                         "/api/categories",  // 获取分区列表
                         "/api/categories/*", // 获取单个分区信息，根据id
                         "/upload/getUrl"   //获取文件资源url
                 ).permitAll()
+                // 运行指标：健康检查公开，其余(metrics等)仅管理员
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                                 // 默认全拦截
                 .anyRequest().authenticated()   // 对于任何其他未匹配的请求，都必须经过身份验证
 
@@ -0,0 +1,79 @@
+package com.liu.springbootdemo.controller;
+
+import com.liu.springbootdemo.POJO.Result.Result;
+import com.liu.springbootdemo.POJO.dto.DraftDTO;
+import com.liu.springbootdemo.POJO.vo.DraftVO;
+import com.liu.springbootdemo.POJO.vo.PostDetailVO;
+import com.liu.springbootdemo.service.DraftService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 草稿接口，草稿就是状态为草稿的帖子，只有作者能操作
+ * 编辑器定时调自动保存，内容先进Redis缓冲，稍后合并写库
+ */
+@RestController
+@RequestMapping("api/posts/drafts")
+@Validated
+@Tag(name = "DraftController", description = "草稿自动保存相关接口")
+public class DraftController {
+    @Autowired
+    private DraftService draftService;
+
+    /**
+     * 新建草稿，内容可以不完整，分区必传
+     * @return 成功返回201和草稿，之后用草稿里的postId自动保存
+     */
+    @PostMapping()
+    @Operation(summary = "新建草稿", description = "新建一个草稿，内容可以不完整，分区Id必传")
+    public ResponseEntity<Result<DraftVO>> createDraft(@Validated @RequestBody DraftDTO draftDTO){
+        return ResponseEntity.status(HttpStatus.CREATED).body(Result.success(draftService.createDraft(draftDTO)));
+    }
+
+    /**
+     * 自动保存，每次传编辑器里的完整内容，只写缓冲
+     * @param postId 草稿的帖子id
+     * @return 保存后的草稿，persisted为false表示还没写库
+     */
+    @PutMapping("/{id}")
+    @Operation(summary = "自动保存草稿", description = "保存到缓冲，稍后合并写库，读草稿立即能读到")
+    public Result<DraftVO> autosave(@PathVariable("id") Long postId, @Validated @RequestBody DraftDTO draftDTO){
+        return Result.success(draftService.autosave(postId, draftDTO));
+    }
+
+    /**
+     * 获取草稿的最新内容，包括还没写库的
+     * @param postId 草稿的帖子id
+     */
+    @GetMapping("/{id}")
+    @Operation(summary = "获取草稿", description = "获取草稿的最新内容，包括还没写库的")
+    public Result<DraftVO> getDraft(@PathVariable("id") Long postId){
+        return Result.success(draftService.getDraft(postId));
+    }
+
+    /**
+     * 手动保存，立即写库
+     * @param postId 草稿的帖子id
+     */
+    @PostMapping("/{id}/save")
+    @Operation(summary = "保存草稿", description = "缓冲里没写库的内容立即写库")
+    public Result<DraftVO> save(@PathVariable("id") Long postId){
+        return Result.success(draftService.save(postId));
+    }
+
+    /**
+     * 发布草稿，标题、内容、简介、分区都要齐全
+     * @param postId 草稿的帖子id
+     * @return 发布后的帖子
+     */
+    @PostMapping("/{id}/publish")
+    @Operation(summary = "发布草稿", description = "先写库再发布，标题、内容、简介、分区都要齐全")
+    public Result<PostDetailVO> publish(@PathVariable("id") Long postId){
+        return Result.success(draftService.publish(postId));
+    }
+}
@@ -1,17 +1,22 @@
 package com.liu.springbootdemo.controller;
 
+import com.liu.springbootdemo.POJO.Result.CursorPageResult;
 import com.liu.springbootdemo.POJO.Result.PageResult;
 import com.liu.springbootdemo.POJO.dto.CreatePostDTO;
 import com.liu.springbootdemo.POJO.entity.Post;
 import com.liu.springbootdemo.POJO.Result.Result;
 import com.liu.springbootdemo.POJO.vo.PostDetailVO;
+import com.liu.springbootdemo.POJO.vo.PostSearchVO;
 import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import com.liu.springbootdemo.service.PostSearchService;
 import com.liu.springbootdemo.service.PostService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirements;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -39,6 +44,8 @@ import java.util.List;
 public class PostController {
     @Autowired
     private PostService postService;
+    @Autowired
+    private PostSearchService postSearchService;
 
     /**
      * 创建帖子
@@ -91,10 +98,54 @@ public class PostController {
      */
     @GetMapping()
     @SecurityRequirements() // 标记此接口不需要鉴权
-    public Result<PageResult> pagePostSummary(@PageableDefault(page = 0,size = 20) Pageable pageable){
-        return Result.success(postService.pagePostSummary(pageable));
+    public Result<PageResult> pagePostSummary(@PageableDefault(page = 0,size = 20) Pageable pageable,
+                                              @RequestParam(defaultValue = "true") boolean count){  //不需要总数的传false，省掉计数
+        return Result.success(postService.pagePostSummary(pageable, count));
      }   //默认返回200
 
+    /**
+     * 游标分页获取已发布帖子，按修改时间倒序，翻多深都一样快
+     * 第一页不传cursor，之后传上一页返回的nextCursor，hasMore为false表示没有下一页
+     * @param cursor 上一页返回的nextCursor
+     * @param size 每页条数，最多100
+     * @return 当页帖子简要列表和下一页游标
+     */
+    @GetMapping("/cursor")
+    @SecurityRequirements() // 标记此接口不需要鉴权
+    public Result<CursorPageResult<PostSummaryVO>> seekPostSummary(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") @Min(1) int size){
+        return Result.success(postService.seekPostSummary(cursor, size));
+    }
+
+    /**
+     * 游标分页获取某用户的帖子，可见范围同 user/{userId}
+     * @param userId 用户id
+     * @param cursor 上一页返回的nextCursor
+     * @param size 每页条数，最多100
+     */
+    @GetMapping("user/{userId}/cursor")
+    public Result<CursorPageResult<PostSummaryVO>> seekPostsByUserId(@Min(value = 1,message = "userId不能小于1")
+                                                                     @PathVariable Long userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "20") @Min(1) int size){
+        return Result.success(postService.seekPostsByUserId(userId, cursor, size));
+    }
+
+    /**
+     * 游标分页获取分区下已发布的帖子，置顶的在前，其余按发布先后倒序
+     * @param categoryId 分区id
+     * @param cursor 上一页返回的nextCursor
+     * @param size 每页条数，最多100
+     */
+    @GetMapping("category/{categoryId}/cursor")
+    @SecurityRequirements() // 标记此接口不需要鉴权
+    public Result<CursorPageResult<PostSummaryVO>> seekPostsByCategoryId(@Min(value = 1,message = "分区id不能小于1")
+                                                                         @PathVariable Long categoryId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "20") @Min(1) int size){
+        return Result.success(postService.seekPostsByCategoryId(categoryId, cursor, size));
+    }
+
     /**
      * 通过{userId}分页获取某用户的帖子
      * -正常用户和管理员都能获取
@@ -109,9 +160,39 @@ public class PostController {
     public Result<PageResult> pagePostsByUserId(@Min(value = 1,message = "userId不能小于1")
                                                 @NotNull
                                                 @PathVariable Long userId,
-                                                @PageableDefault(page = 0,size = 20) Pageable pageable){
+                                                @PageableDefault(page = 0,size = 20) Pageable pageable,
+                                                @RequestParam(defaultValue = "true") boolean count){
 
-        return Result.success(postService.pagePostsByUserId(userId, pageable));
+        return Result.success(postService.pagePostsByUserId(userId, pageable, count));
+    }
+
+    /**
+     * 批量获取帖子详情，通知、收藏、热榜等一次要多个帖子时用，免得逐个调/{id}
+     * 可见性同单个帖子详情，无权查看和不存在的帖子直接跳过
+     * @param ids 帖子id，逗号分隔，最多100个
+     * @return 帖子详情列表，顺序同ids
+     */
+    @GetMapping("/batch")
+    @SecurityRequirements()
+    public Result<List<PostDetailVO>> getPostsByIds(@RequestParam @Size(min = 1, max = 100, message = "一次查询1~100个帖子") List<Long> ids){
+        return Result.success(postService.getPostsByIds(ids));
+    }
+
+    /**
+     * 搜索已发布的帖子，按相关度倒序，标题和正文里的关键词高亮
+     * 第一页不传cursor，之后传上一页返回的nextCursor
+     * @param keyword 关键词，中文会自动分词，每个词都要命中
+     * @param categoryIds 只搜这些分区，不传不限
+     * @param cursor 上一页返回的nextCursor
+     * @param size 每页条数，最多100
+     */
+    @GetMapping("/search")
+    @SecurityRequirements()
+    public Result<CursorPageResult<PostSearchVO>> search(@RequestParam @NotBlank @Size(max = 50, message = "关键词不能超过{max}个字符") String keyword,
+                                                         @RequestParam(required = false) @Size(max = 20, message = "最多同时筛选{max}个分区") List<Long> categoryIds,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "20") @Min(1) int size){
+        return Result.success(postSearchService.search(keyword, categoryIds, cursor, size));
     }
 
     /**
@@ -145,4 +226,18 @@ public class PostController {
     ){
         return Result.success(postService.getPostsByCursor(cursor, size));
     }
+
+    /**
+     * 热门帖子，按热度倒序，热度由点赞、评论、浏览数随发布时间衰减算出
+     * 只收录近几天发布的帖子，翻过榜单末尾返回空列表
+     * @param page 页码，从0开始
+     * @param size 每页条数，最多100
+     * @return 列表
+     */
+    @GetMapping("/hot")
+    @SecurityRequirements()
+    public Result<List<PostSummaryVO>> getHotPosts(@RequestParam(defaultValue = "0") @Min(0) int page,
+                                                   @RequestParam(defaultValue = "20") @Min(1) int size){
+        return Result.success(postService.getHotPosts(page, size));
+    }
 }
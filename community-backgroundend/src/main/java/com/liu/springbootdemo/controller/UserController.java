@@ -3,10 +3,13 @@ package com.liu.springbootdemo.controller;
 import com.liu.springbootdemo.POJO.dto.user.LoginInControllerDTO;
 import com.liu.springbootdemo.POJO.dto.user.RegisterDTO;
 import com.liu.springbootdemo.POJO.dto.user.UpdateUserDTO;
+import com.liu.springbootdemo.POJO.dto.user.admin.BanUserDTO;
+import com.liu.springbootdemo.POJO.vo.AvailabilityVO;
 import com.liu.springbootdemo.POJO.vo.LoginResponseVO;
 import com.liu.springbootdemo.POJO.Result.Result;
 import com.liu.springbootdemo.POJO.entity.User;
 import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.enums.UserRole;
 import com.liu.springbootdemo.common.exception.BusinessException;
 import com.liu.springbootdemo.service.MinioService;
 import com.liu.springbootdemo.service.UserService;
@@ -94,6 +97,22 @@ public class UserController {
         return Result.success();
     }
 
+    /**
+     * 注册前检查用户名/邮箱是否已被占用，可只传其中一个
+     * @param username 用户名
+     * @param email 邮箱
+     * @return 各项是否可用
+     */
+    @GetMapping("/availability")
+    @SecurityRequirements() // 标记此接口不需要鉴权
+    public Result<AvailabilityVO> checkAvailability(@RequestParam(required = false) String username,
+                                                    @RequestParam(required = false) @Email String email){
+        if(!StringUtils.hasText(username) && !StringUtils.hasText(email)){
+            throw new BusinessException(ErrorCode.PARAM_ERROR, "用户名和邮箱至少传一个");
+        }
+        return Result.success(userService.checkAvailability(username, email));
+    }
+
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
     public Result<List<User>> getAllUser(){
@@ -110,4 +129,41 @@ public class UserController {
         return Result.success("删除用户成功");
     }
 
+    /**
+     * 管理员封禁用户，该用户已登录的Token立即失效
+     * @param id 用户id
+     * @param banUserDTO 封禁原因和截止时间
+     */
+    @PatchMapping("/{id}/ban")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result banUser(@PathVariable @Min(value = 1,message = "用户id下限1") Long id,
+                          @RequestBody @Valid BanUserDTO banUserDTO){
+        userService.banUser(id, banUserDTO.getBanReason(), banUserDTO.getBanUntil());
+        return Result.success("封禁用户成功");
+    }
+
+    /**
+     * 管理员解封用户
+     * @param id 用户id
+     */
+    @PatchMapping("/{id}/unban")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result unbanUser(@PathVariable @Min(value = 1,message = "用户id下限1") Long id){
+        userService.unbanUser(id);
+        return Result.success("解封用户成功");
+    }
+
+    /**
+     * 管理员修改用户角色，该用户需重新登录后新角色生效
+     * @param id 用户id
+     * @param role 角色 USER/MODERATOR/ADMIN
+     */
+    @PatchMapping("/{id}/role")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result changeRole(@PathVariable @Min(value = 1,message = "用户id下限1") Long id,
+                             @RequestParam UserRole role){
+        userService.changeRole(id, role);
+        return Result.success("修改用户角色成功");
+    }
+
 }
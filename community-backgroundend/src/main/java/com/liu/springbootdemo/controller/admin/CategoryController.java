@@ -3,9 +3,11 @@ package com.liu.springbootdemo.controller.admin;
 import com.liu.springbootdemo.POJO.dto.request.CategoryPageQueryDTO;
 import com.liu.springbootdemo.POJO.dto.request.CreateCategoryDTO;
 import com.liu.springbootdemo.POJO.vo.CategoryAdminVO;
+import com.liu.springbootdemo.POJO.vo.UniqueVisitorVO;
 import com.liu.springbootdemo.POJO.Result.PageResult;
 import com.liu.springbootdemo.POJO.Result.Result;
 import com.liu.springbootdemo.service.CategoryService;
+import com.liu.springbootdemo.service.UniqueVisitorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityRequirements;
@@ -29,6 +31,8 @@ import org.springframework.web.bind.annotation.*;
 public class CategoryController {
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private UniqueVisitorService uniqueVisitorService;
 
     /**
      * 分区分页查询 - 管理员版-isAdmin=True
@@ -61,6 +65,17 @@ public class CategoryController {
         return Result.success(vo);
     }
 
+    /**
+     * 分区的独立访客数：今天、近7天、近30天
+     */
+    @GetMapping("/{id}/uv")
+    @Operation(summary = "分区独立访客数-管理员版")
+    public Result<UniqueVisitorVO> getCategoryUniqueVisitors(@PathVariable
+                                                             @Min(value = 1,message = "ID必须大于0")
+                                                             Long id){
+        return Result.success(uniqueVisitorService.countCategory(id));
+    }
+
     /**
      * 分区的增，管理员检验
      */
@@ -1,7 +1,13 @@
 package com.liu.springbootdemo.controller.admin;
 
 import com.liu.springbootdemo.POJO.Result.Result;
+import com.liu.springbootdemo.POJO.vo.PostRevisionVO;
+import com.liu.springbootdemo.POJO.vo.UniqueVisitorVO;
+import com.liu.springbootdemo.service.PostRevisionService;
+import com.liu.springbootdemo.service.PostSearchService;
 import com.liu.springbootdemo.service.PostService;
+import com.liu.springbootdemo.service.UniqueVisitorService;
+import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -10,11 +16,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController("adminPostController")
 @PreAuthorize("hasRole('ADMIN')")
 @RequestMapping("api/admin/posts")
@@ -25,6 +34,12 @@ public class PostController {
 
     @Autowired
     private PostService postService;
+    @Autowired
+    private UniqueVisitorService uniqueVisitorService;
+    @Autowired
+    private PostRevisionService postRevisionService;
+    @Autowired
+    private PostSearchService postSearchService;
 
     @PostMapping("/{postId}")
     public Result setPostStatus(@PathVariable Long postId,
@@ -35,4 +50,46 @@ public class PostController {
         postService.setPostStatus(postId, status);
         return Result.success();
     }
+
+    /**
+     * 帖子的独立访客数：今天、近7天、近30天
+     * @param postId 帖子id
+     */
+    @GetMapping("/{postId}/uv")
+    @Operation(summary = "帖子独立访客数-管理员版")
+    public Result<UniqueVisitorVO> getPostUniqueVisitors(@PathVariable @Min(value = 1, message = "ID必须大于0") Long postId) {
+        return Result.success(uniqueVisitorService.countPost(postId));
+    }
+
+    /**
+     * 帖子的修改历史，新版本在前，不带正文
+     * @param postId 帖子id
+     */
+    @GetMapping("/{postId}/revisions")
+    @Operation(summary = "帖子修改历史-管理员版")
+    public Result<List<PostRevisionVO>> listRevisions(@PathVariable @Min(value = 1, message = "ID必须大于0") Long postId) {
+        return Result.success(postRevisionService.listRevisions(postId));
+    }
+
+    /**
+     * 查看帖子某个历史版本的标题和正文
+     * @param postId 帖子id
+     * @param version 版本号，从1开始
+     */
+    @GetMapping("/{postId}/revisions/{version}")
+    @Operation(summary = "帖子历史版本-管理员版")
+    public Result<PostRevisionVO> getRevision(@PathVariable @Min(value = 1, message = "ID必须大于0") Long postId,
+                                              @PathVariable @Min(value = 1, message = "版本号必须大于0") int version) {
+        return Result.success(postRevisionService.getRevision(postId, version));
+    }
+
+    /**
+     * 所有实例在后台全量重建搜索索引，索引丢失或与数据库不一致时用
+     */
+    @PostMapping("/search/reindex")
+    @Operation(summary = "重建帖子搜索索引-管理员版")
+    public Result reindexSearch() {
+        postSearchService.reindexAll();
+        return Result.success();
+    }
 }
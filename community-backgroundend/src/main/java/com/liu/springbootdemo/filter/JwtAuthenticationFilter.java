@@ -1,7 +1,10 @@
 package com.liu.springbootdemo.filter;
 
+import com.liu.springbootdemo.common.security.LoginUser;
 import com.liu.springbootdemo.common.utils.JwtUtil;
 import com.liu.springbootdemo.common.utils.ResponseUtil;
+import com.liu.springbootdemo.service.TokenVersionService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -29,6 +32,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
     @Override
     protected void doFilterInternal(
             HttpServletRequest request,
@@ -51,16 +57,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
 
         try {
-            // 4. 从Token中解析出用户名
-            username = jwtUtil.extractUsername(jwt);
+            // 4. 解析Token(只验签一次，结果由JwtUtil按Token缓存到exp)，从中取出用户名
+            Claims claims = jwtUtil.parseToken(jwt);
+            username = claims.getSubject();
 
             // 5. 核心验证逻辑
             // 检查用户名不为空，并且【当前安全上下文中没有已认证的用户信息】
             // SecurityContextHolder.getContext().getAuthentication() == null 是为了防止重复认证
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                // a. 根据用户名加载用户的详细信息 (UserDetails)
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+                // a. 构建用户详细信息 (UserDetails)
+                // 无状态模式且Token带有uid/role/tv时直接用Claims构建，只校验Token版本号，不查数据库
+                UserDetails userDetails = jwtUtil.isStateless() ? jwtUtil.toLoginUser(claims) : null;
+                if (userDetails instanceof LoginUser loginUser) {
+                    Integer currentVersion = tokenVersionService.currentVersion(loginUser.getId());
+                    if (currentVersion == null || currentVersion != loginUser.getTokenVersion()) {
+                        // 用户已删除、被封禁或角色变更，旧Token作废
+                        ResponseUtil.sendErrorResponse(
+                                response,
+                                HttpServletResponse.SC_UNAUTHORIZED,
+                                "登录状态已失效，请重新登陆");
+                        log.info("用户{}的Token版本已过期", loginUser.getUsername());
+                        return;
+                    }
+                } else {
+                    // 回表模式或旧版Token：根据用户名加载用户的详细信息
+                    userDetails = this.userDetailsService.loadUserByUsername(username);
+                }
 
                 if(userDetails != null){
                     log.debug("用户：{} Details不为空", userDetails.getUsername());
@@ -70,7 +93,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
 
                 // b. 验证Token是否有效（用户名匹配且未过期）
-                if (jwtUtil.validateToken(jwt, userDetails)) {
+                if (jwtUtil.validateToken(claims, userDetails)) {
                     // c. 如果Token有效，则构建一个【已认证】的 Authentication 对象
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
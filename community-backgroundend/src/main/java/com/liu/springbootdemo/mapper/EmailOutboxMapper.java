@@ -0,0 +1,73 @@
+package com.liu.springbootdemo.mapper;
+
+
+import com.liu.springbootdemo.POJO.entity.EmailOutbox;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface EmailOutboxMapper {
+
+    /** 增
+     * 邮件入队，立即可发送
+     * @param mail 收件人、标题、正文
+     * @return 影响的行数，1为成功
+     */
+    @Insert("INSERT INTO email_outbox(to_address, subject, content, status, attempts, next_attempt_time, create_time) " +
+            "VALUES(#{toAddress}, #{subject}, #{content}, 0, 0, NOW(), NOW())")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(EmailOutbox mail);
+
+    /** 改
+     * 认领一批到期的待发送邮件，多实例并发认领时行锁保证每封只被一个批次拿到
+     * @param owner 本批次唯一标识
+     * @param limit 最多认领条数
+     * @return 认领到的条数
+     */
+    @Update("UPDATE email_outbox SET status = 1, owner = #{owner}, claim_time = NOW() " +
+            "WHERE status = 0 AND next_attempt_time <= NOW() ORDER BY id LIMIT #{limit}")
+    int claimBatch(@Param("owner") String owner, @Param("limit") int limit);
+
+    /** 查
+     * 查询某批次认领到的邮件
+     * @param owner 批次标识
+     * @return 邮件列表
+     */
+    @Select("SELECT * FROM email_outbox WHERE owner = #{owner} AND status = 1")
+    List<EmailOutbox> findClaimed(String owner);
+
+    /** 改
+     * 批量标记已发送，并清空正文(验证码不长期留库)
+     * 只更新仍由本批次认领的邮件，认领超时被放回、已被其他批次接手的不动
+     * @param owner 批次标识
+     * @param ids 邮件id
+     * @return 影响的行数
+     */
+    int markSent(@Param("owner") String owner, @Param("ids") List<Long> ids);
+
+    /** 改
+     * 记录一次发送失败：回到待发送等下次重试，或次数用完标记失败
+     * 只更新仍由本批次认领的邮件，同markSent
+     * @param id 邮件id
+     * @param owner 批次标识
+     * @param status 新状态，PENDING或FAILED
+     * @param attempts 已尝试次数
+     * @param nextAttemptTime 下次最早发送时间
+     * @param lastError 失败原因
+     * @return 影响的行数，1为成功
+     */
+    @Update("UPDATE email_outbox SET status = #{status}, attempts = #{attempts}, next_attempt_time = #{nextAttemptTime}, " +
+            "last_error = #{lastError}, owner = NULL WHERE id = #{id} AND owner = #{owner} AND status = 1")
+    int markAttemptFailed(@Param("id") Long id, @Param("owner") String owner, @Param("status") int status, @Param("attempts") int attempts,
+                          @Param("nextAttemptTime") LocalDateTime nextAttemptTime, @Param("lastError") String lastError);
+
+    /** 改
+     * 释放认领超时的邮件(认领的实例宕机等)，让其重新进入待发送
+     * @param before 认领时间早于该时刻的视为超时
+     * @return 影响的行数
+     */
+    @Update("UPDATE email_outbox SET status = 0, owner = NULL WHERE status = 1 AND claim_time < #{before}")
+    int releaseStaleClaims(LocalDateTime before);
+}
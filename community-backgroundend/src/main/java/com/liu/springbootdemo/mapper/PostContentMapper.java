@@ -0,0 +1,88 @@
+package com.liu.springbootdemo.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 帖子正文表，与posts一对一，主键即帖子id
+ * 正文从posts拆出来，列表查询读posts时不再带出大字段
+ */
+@Mapper
+public interface PostContentMapper {
+
+    /**
+     * 增/改
+     * 写入帖子正文，已存在则覆盖(迁移期间posts里还没搬过来的帖子被修改时也走这里)
+     * @param postId 帖子id
+     * @param content 正文
+     * @return 影响的行数
+     */
+    @Insert("INSERT INTO post_contents(post_id, content) VALUES(#{postId}, #{content}) " +
+            "ON DUPLICATE KEY UPDATE content = VALUES(content)")
+    int upsert(@Param("postId") Long postId, @Param("content") String content);
+
+    /**
+     * 改
+     * 清空posts里的旧正文，与upsert在同一事务里：还没迁移的帖子被修改后，posts里不再留着过期的全文
+     * @param postId 帖子id
+     * @return 影响的行数，已迁移的为0
+     */
+    @Update("UPDATE posts SET content = NULL, update_time = update_time WHERE id = #{postId} AND content IS NOT NULL")
+    int clearPostsContent(@Param("postId") Long postId);
+
+    /**
+     * 迁移：把(fromId, toId]范围内posts里的正文复制到本表，已有的跳过，可重复执行
+     * @param fromId 起始id(不含)
+     * @param toId 结束id(含)
+     * @return 复制的行数
+     */
+    @Insert("INSERT IGNORE INTO post_contents(post_id, content) " +
+            "SELECT id, content FROM posts WHERE id > #{fromId} AND id <= #{toId} AND content IS NOT NULL")
+    int copyFromPosts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 迁移：清空(fromId, toId]范围内已复制到本表的posts.content，与copyFromPosts在同一事务里
+     * 只清两边一致的；不一致说明复制后posts.content又被改过(如旧版本实例还在写)，留着不动，不丢内容
+     * @param fromId 起始id(不含)
+     * @param toId 结束id(含)
+     * @return 影响的行数
+     */
+    @Update("UPDATE posts p JOIN post_contents pc ON pc.post_id = p.id " +
+            "SET p.content = NULL, p.update_time = p.update_time " +
+            "WHERE p.id > #{fromId} AND p.id <= #{toId} AND p.content IS NOT NULL AND p.content = pc.content")
+    int clearMigrated(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 迁移：(fromId, toId]范围内清不掉的帖子数，即posts.content和post_contents不一致，需要人工核对
+     * @param fromId 起始id(不含)
+     * @param toId 结束id(含)
+     */
+    @Select("SELECT COUNT(*) FROM posts WHERE id > #{fromId} AND id <= #{toId} AND content IS NOT NULL")
+    long countUnmigrated(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 迁移：posts当前最大id，没有帖子返回0
+     */
+    @Select("SELECT COALESCE(MAX(id), 0) FROM posts")
+    long findMaxPostId();
+
+    /**
+     * 迁移：读进度
+     * @param name 任务名
+     * @return 已迁移到的id，没有记录返回null
+     */
+    @Select("SELECT cursor_id FROM job_checkpoint WHERE name = #{name}")
+    Long findCheckpoint(String name);
+
+    /**
+     * 迁移：保存进度
+     * @param name 任务名
+     * @param cursorId 已迁移到的id
+     */
+    @Insert("INSERT INTO job_checkpoint(name, cursor_id, update_time) VALUES(#{name}, #{cursorId}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE cursor_id = VALUES(cursor_id), update_time = NOW()")
+    int saveCheckpoint(@Param("name") String name, @Param("cursorId") long cursorId);
+}
@@ -2,10 +2,15 @@ package com.liu.springbootdemo.mapper;
 
 import com.github.pagehelper.Page;
 import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.entity.PostCount;
 import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 还有三连状态查询，热度查询，新更新，新创建
@@ -18,8 +23,8 @@ public interface PostMapper {
      * @param post 新帖子
      * @return 影响的行数，1为成功
      */
-    @Insert("INSERT INTO posts(user_id,title,content,summary,create_time,update_time,category_id,category_name,status)"+  //NOTE:1.4加上status    NOTE:12.31 加上分区名  NOTE:12.28 使category_id为必填字段
-            "VALUES(#{userId},#{title},#{content},#{summary}, NOW(), NOW(), #{categoryId},#{categoryName},#{status})")
+    @Insert("INSERT INTO posts(user_id,title,summary,create_time,update_time,category_id,category_name,status)"+  //NOTE:1.4加上status    NOTE:12.31 加上分区名  NOTE:12.28 使category_id为必填字段  正文另写post_contents
+            "VALUES(#{userId},#{title},#{summary}, #{createTime}, #{updateTime}, #{categoryId},#{categoryName},#{status})")
     @Options(useGeneratedKeys = true, keyProperty = "id")   //获取数据库主键，并赋给id
     int insert(Post post);
 
@@ -27,12 +32,55 @@ public interface PostMapper {
      * 查
      * 根据id查帖子详情，用于展示帖子，PostDetailVO ≤ Post，可以直接转换
      * 大多数调用都是内部调用或者创作者才能调用，在Service层已经有很多逻辑，数据库不要多条件查询，对于帖子状态的过滤在Service层做
+     * 正文在post_contents，只有展示详情时才需要，其他场景用findBriefById
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
      * @Param id 帖子id
      * @return post 帖子对象
      */
-    @Select("SELECT * FROM posts WHERE id = #{id}")
     Post findById(Long id);
 
+    /**
+     * 查
+     * 根据id批量查帖子，带正文，批量获取帖子详情时缓存未命中的部分一次回源
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param ids 帖子id列表，不能为空
+     * @return 帖子列表，顺序不保证，不存在的id不返回
+     */
+    List<Post> findByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查
+     * 流式读取全部已发布帖子，带正文，重建搜索索引用；要在事务里读完，读完关闭
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @return 帖子游标
+     */
+    Cursor<Post> streamPublished();
+
+    /**
+     * 查
+     * 流式读取change_time不早于since的帖子(任意状态)，搜索索引追赶漏掉的变更用；要在事务里读完，读完关闭
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param since 变更时间下限
+     * @return 帖子游标，不是已发布的不带正文
+     */
+    Cursor<Post> streamChangedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * 查
+     * 数据库当前时间，和change_time比较用，不受应用服务器时钟偏差影响
+     */
+    @Select("SELECT NOW(3)")
+    LocalDateTime currentTime();
+
+    /**
+     * 查
+     * 根据id查帖子，不带正文，只读posts表，校验存在、作者、状态等场景用
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @Param id 帖子id
+     * @return post 帖子对象，content为null
+     */
+    Post findBriefById(Long id);
+
     /**
      * 查
      * 根据id查帖子是否存在 - 管理员，所以不排除已删除的帖子
@@ -55,7 +103,7 @@ public interface PostMapper {
     /**
      * 分页查,pageHelper已在Service层开启
      * 根据userId查帖子列表，
-     * 查的都是SummaryVO，用于用户主页展示帖子列表，所以没填userId字段
+     * 查的都是SummaryVO，用于用户主页展示帖子列表，作者信息由Service层批量填充
      * 动态sql根据传参isAdmin返回不同结果
      * @Param userId 用户id
      * @Param isAdmin 是否管理员
@@ -65,29 +113,13 @@ public interface PostMapper {
                                           @Param("isAdmin") boolean isAdmin,
                                           @Param("isAuthor") boolean isAuthor);
 
-    /**
-     * 查
-     * 根据categoryId查帖子列表
-     * FIXME:限制只返回已发布的帖子，后续可能会有管理员查看分区下所有帖子需求再改，建议统一状态过滤在Service层做
-     * 只查询已发布(PUBLISHED=2)的帖子
-     * 使用 OGNL 表达式直接引用枚举常量，避免魔法数字，也不需要传参
-     * @Param categoryId 分区id
-     * @return posts 帖子对象列表
-     */
-    @Select("SELECT * FROM posts WHERE category_id = #{categoryId} AND status = ${@com.liu.springbootdemo.common.enums.PostStatus@PUBLISHED.getStatus()}")
-    List<Post> findPostsByCategoryId(@Param("categoryId")Long categoryId);
-
     /**
      * 分页查指定状态的帖子
      * 返回index下size数量的帖子，用于分页
      * 自动有pageable拦截器处理分页
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
      * @return List<Post>
      */
-    @Select("SELECT p.*, u.username, u.avatar_url as userAvatarUrl " +
-            "FROM posts p " +
-            "LEFT JOIN users u ON p.user_id = u.id " +
-            "WHERE p.status = #{status} " +
-            "ORDER BY p.update_time DESC")// DESC降序，越新越前面
     Page<PostSummaryVO> getPostsByPage(@Param("status") int status);
 
     /**
@@ -98,25 +130,130 @@ public interface PostMapper {
      */
     List<PostSummaryVO> getPostsByCursor(@Param("cursor")Long cursor ,@Param("size") int size);
 
+    /**
+     * 游标分页查指定状态的帖子，按(修改时间, id)倒序
+     * 用上一页最后一行的排序键定位，走(status, update_time, id)索引，翻到多深都只扫size+1行
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param status 帖子状态
+     * @param updateTime 上一页最后一行的修改时间，第一页为null
+     * @param id 上一页最后一行的id，第一页为null
+     * @param size 条数
+     * @return 帖子概要列表
+     */
+    List<PostSummaryVO> seekPostsByStatus(@Param("status") int status,
+                                          @Param("updateTime") LocalDateTime updateTime,
+                                          @Param("id") Long id,
+                                          @Param("size") int size);
+
+    /**
+     * 游标分页查某用户的帖子，按(修改时间, id)倒序，可见范围同findPostsByUserId
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     */
+    List<PostSummaryVO> seekPostsByUserId(@Param("userId") Long userId,
+                                          @Param("isAdmin") boolean isAdmin,
+                                          @Param("isAuthor") boolean isAuthor,
+                                          @Param("updateTime") LocalDateTime updateTime,
+                                          @Param("id") Long id,
+                                          @Param("size") int size);
+
+    /**
+     * 游标分页查分区下已发布的帖子，置顶的在前，同组内按id倒序，走(category_id, status, is_pinned, id)索引
+     * 代替原来一次查出整个分区、带正文的findPostsByCategoryId
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param categoryId 分区id
+     * @param pinned 上一页最后一条是否置顶，第一页忽略
+     * @param id 上一页最后一条的id，第一页为null
+     * @param size 条数
+     * @return 帖子概要列表
+     */
+    List<PostSummaryVO> seekPostsByCategoryId(@Param("categoryId") Long categoryId,
+                                              @Param("pinned") boolean pinned,
+                                              @Param("id") Long id,
+                                              @Param("size") int size);
+
+    /**
+     * 按id批量查已发布帖子的概要，热榜等按id列表展示时用，结果顺序不保证
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param ids 帖子id列表，不能为空
+     * @return 帖子概要列表
+     */
+    List<PostSummaryVO> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查某时间之后发布的已发布帖子，只带算热度要用的字段，热榜重算用
+     * @param since 发布时间下限
+     * @return 帖子列表，只有id、createTime和各项计数
+     */
+    @Select("SELECT id, create_time, view_count, like_count, comment_count FROM posts " +
+            "WHERE status = ${@com.liu.springbootdemo.common.enums.PostStatus@PUBLISHED.getStatus()} " +
+            "AND create_time >= #{since}")
+    List<Post> findHotCandidates(@Param("since") LocalDateTime since);
+
+    /**
+     * 按点赞、评论、浏览数倒序分页查已发布帖子，热榜在Redis不可用时的兜底，走idx_hot索引
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param offset 起始行
+     * @param size 条数
+     * @return 帖子概要列表
+     */
+    List<PostSummaryVO> findHotByCounts(@Param("offset") int offset, @Param("size") int size);
+
     /**
      * 改
-     * 根据帖子id改帖子内容和标题，但需要动态构造title/content更新
+     * 根据帖子id改帖子标题等字段，但需要动态构造更新，正文另用PostContentMapper.upsert
+     * update_time取post.updateTime，由Service层设置
      * xml-具体SQL实现见 resources/mapper/PostMapper.xml
      * @param post
      * @return 影响的行数，1为成功
      */
     int updatePost(@Param("id") Long postId, @Param("P") Post post);
 
+    /**
+     * 改
+     * 草稿缓冲写库，标题、简介、封面按草稿原样覆盖(允许清空)，分区只在传了分区名时才改
+     * 只改仍是草稿的帖子，期间已发布或删除的返回0
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param postId 帖子id
+     * @param post 草稿内容，updateTime由Service层设置
+     * @return 影响的行数，1为成功
+     */
+    int saveDraft(@Param("id") Long postId, @Param("P") Post post);
+
     /**
      * 改帖子状态，但是需要不改动帖子的修改时间，因为修改时间是用户的修改为准，状态修改不改变修改时间
      * 显式设置 update_time = update_time 以规避 MySQL 的 ON UPDATE CURRENT_TIMESTAMP 自动更新
+     * 改为已删除时记下删除时间(已是删除状态的保留原时间)，改为其他状态时清空，过了保留期由PostPurgeJob物理删除
+     * 已被PostPurgeJob认领(purge_time非空)的帖子不改，评论等数据已经在删了，不能再恢复
+     * 状态变化影响搜索索引，记下change_time
      * @param postId
      * @param status
-     * @return 影响的行数，1为成功
+     * @return 影响的行数，1为成功，0为帖子不存在或正在物理删除
      */
-    @Update("UPDATE posts SET status = #{status},update_time = update_time WHERE id = #{id}")
+    @Update("UPDATE posts SET status = #{status}, " +
+            "delete_time = IF(#{status} = ${@com.liu.springbootdemo.common.enums.PostStatus@DELETED.getStatus()}, COALESCE(delete_time, NOW()), NULL), " +
+            "update_time = update_time, change_time = NOW(3) WHERE id = #{id} AND purge_time IS NULL")
     int updateStatus(@Param("id") Long postId, @Param("status") int status);
 
+    /**
+     * 改
+     * 草稿改为已发布，只改仍是草稿的行：检查之后被删除或已被发布的不会再发布一次
+     * @param postId 帖子id
+     * @return 影响的行数，0为已不是草稿
+     */
+    @Update("UPDATE posts SET status = ${@com.liu.springbootdemo.common.enums.PostStatus@PUBLISHED.getStatus()}, " +
+            "delete_time = NULL, update_time = update_time, change_time = NOW(3) " +
+            "WHERE id = #{id} AND status = ${@com.liu.springbootdemo.common.enums.PostStatus@DRAFT.getStatus()}")
+    int publishDraft(@Param("id") Long postId);
+
+    /**
+     * 改
+     * 批量累加浏览量，一条CASE语句更新多行，浏览量定时写库用
+     * xml-具体SQL实现见 resources/mapper/PostMapper.xml
+     * @param deltas 帖子id -> 浏览量增量
+     * @return 影响的行数
+     */
+    int addViewCounts(@Param("deltas") Map<Long, Long> deltas);
+
     /**
      * 硬删，管理员
      * 根据id删帖子
@@ -135,4 +272,11 @@ public interface PostMapper {
     @Select("SELECT count(*) FROM posts WHERE category_id = #{categoryId}")
     int countCategoryPostByCategoryId(Long categoryId);
 
+    /**
+     * 按作者、分区、状态分组统计帖子数，定时校准帖子计数用
+     * @return 分组统计行
+     */
+    @Select("SELECT user_id, category_id, status, COUNT(*) AS total FROM posts GROUP BY user_id, category_id, status")
+    List<PostCount> countGroupByUserCategoryStatus();
+
 }
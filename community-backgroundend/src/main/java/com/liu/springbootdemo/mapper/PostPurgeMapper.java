@@ -0,0 +1,95 @@
+package com.liu.springbootdemo.mapper;
+
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 清理软删除超过保留期的帖子，每条删除语句都带LIMIT，一次只锁少量行
+ * xml-具体SQL实现见 resources/mapper/PostPurgeMapper.xml
+ */
+@Mapper
+public interface PostPurgeMapper {
+
+    /** 查
+     * 按id正序取一批删除时间早于cutoff的已删除帖子，带封面和正文，删图片用
+     * @param afterId 上一批最后一个id，从头开始传0
+     * @param cutoff 删除时间上限
+     * @param limit 条数
+     * @return 帖子列表，只有id、userId、categoryId、status、coverImage、content
+     */
+    List<Post> findExpired(@Param("afterId") long afterId,
+                           @Param("cutoff") LocalDateTime cutoff,
+                           @Param("limit") int limit);
+
+    /** 改
+     * 认领这批帖子：记下认领时间，之后这些帖子不能再改状态(恢复)
+     * 只认领仍是已删除、删除时间早于cutoff的，已认领的保留原时间
+     * @return 影响的行数
+     */
+    int claimForPurge(@Param("postIds") Collection<Long> postIds, @Param("cutoff") LocalDateTime cutoff);
+
+    /** 查
+     * 这批帖子中已被认领的id，只删这些帖子的评论、图片等
+     */
+    List<Long> findClaimed(@Param("postIds") Collection<Long> postIds);
+
+    /** 查
+     * 这批帖子下的评论数，试运行时统计用
+     */
+    long countComments(@Param("postIds") Collection<Long> postIds);
+
+    /** 删
+     * 删这批帖子下评论收到的点赞，最多limit行
+     * @return 删除的行数，小于limit说明删完了
+     */
+    int deleteCommentLikes(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    /** 删
+     * 删这批帖子下的评论，最多limit行，楼中楼由外键级联删除
+     * @return 删除的行数(不含级联的)
+     */
+    int deleteComments(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    /** 删
+     * 删这批帖子收到的点赞，最多limit行
+     */
+    int deletePostLikes(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    /** 删
+     * 删这批帖子的收藏，最多limit行
+     */
+    int deleteCollects(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    /** 删
+     * 删这批帖子的修订历史，最多limit行
+     */
+    int deleteRevisions(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    /** 删
+     * 物理删除已认领的帖子，正文由外键级联删除(每个帖子只有一行)
+     * @return 删除的行数
+     */
+    int deletePosts(@Param("postIds") Collection<Long> postIds);
+
+    /** 查
+     * 读任务进度
+     * @param name 任务名
+     * @return 上次处理到的id，没有记录返回null
+     */
+    @Select("SELECT cursor_id FROM job_checkpoint WHERE name = #{name}")
+    Long findCheckpoint(String name);
+
+    /** 改
+     * 保存任务进度
+     * @param name 任务名
+     * @param cursorId 已处理完的最后一个id
+     */
+    @Insert("INSERT INTO job_checkpoint(name, cursor_id, update_time) VALUES(#{name}, #{cursorId}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE cursor_id = VALUES(cursor_id), update_time = NOW()")
+    int saveCheckpoint(@Param("name") String name, @Param("cursorId") long cursorId);
+}
@@ -0,0 +1,46 @@
+package com.liu.springbootdemo.mapper;
+
+
+import com.liu.springbootdemo.POJO.entity.PostRevision;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 帖子修订历史，每次修改帖子追加一行，不改不删，帖子物理删除时外键级联删除
+ */
+@Mapper
+public interface PostRevisionMapper {
+
+    /** 增
+     * 追加一个版本，(post_id, version)唯一，并发追加同一版本号时后到的报重复键
+     * @param revision 版本
+     * @return 影响的行数，1为成功
+     */
+    @Insert("INSERT INTO post_revisions(post_id, version, editor_id, is_snapshot, title, payload, create_time) " +
+            "VALUES(#{postId}, #{version}, #{editorId}, #{snapshot}, #{title}, #{payload}, #{createTime})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(PostRevision revision);
+
+    /** 查
+     * 帖子的版本列表，不带payload，新版本在前
+     * @param postId 帖子id
+     * @return 版本列表
+     */
+    @Select("SELECT id, post_id, version, editor_id, is_snapshot, title, create_time FROM post_revisions " +
+            "WHERE post_id = #{postId} ORDER BY version DESC")
+    List<PostRevision> findByPostId(Long postId);
+
+    /** 查
+     * 还原某版本要用的行：该版本之前(含)最近的一个全文版本，到该版本为止，按版本号正序
+     * 每隔snapshot-interval版存一次全文，最多读这么多行
+     * @param postId 帖子id
+     * @param version 要还原的版本号，传Integer.MAX_VALUE取最新版本
+     * @return 以全文版本开头的版本列表，版本不存在返回空
+     */
+    @Select("SELECT * FROM post_revisions WHERE post_id = #{postId} AND version <= #{version} " +
+            "AND version >= (SELECT MAX(version) FROM post_revisions " +
+            "WHERE post_id = #{postId} AND version <= #{version} AND is_snapshot = 1) " +
+            "ORDER BY version")
+    List<PostRevision> findChain(@Param("postId") Long postId, @Param("version") int version);
+}
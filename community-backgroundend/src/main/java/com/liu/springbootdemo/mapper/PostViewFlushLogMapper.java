@@ -0,0 +1,36 @@
+package com.liu.springbootdemo.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * 浏览量写库日志，批次号为主键，同一批次只能写入一次，防止重启重试时重复累加
+ */
+@Mapper
+public interface PostViewFlushLogMapper {
+
+    /**
+     * 增
+     * 记录一个已写库的批次，与浏览量更新在同一事务里
+     * @param batchId 批次号
+     * @param postCount 本批帖子数
+     * @param viewCount 本批浏览量合计
+     * @return 影响的行数，批次号已存在时抛DuplicateKeyException
+     */
+    @Insert("INSERT INTO post_view_flush_log(batch_id, post_count, view_count, flush_time) " +
+            "VALUES(#{batchId}, #{postCount}, #{viewCount}, NOW())")
+    int insert(@Param("batchId") String batchId, @Param("postCount") int postCount, @Param("viewCount") long viewCount);
+
+    /**
+     * 删
+     * 清理旧日志
+     * @param before 早于该时间的删除
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM post_view_flush_log WHERE flush_time < #{before}")
+    int deleteBefore(LocalDateTime before);
+}
@@ -3,8 +3,13 @@ package com.liu.springbootdemo.mapper;
 
 import com.liu.springbootdemo.POJO.entity.User;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserMapper {
@@ -26,6 +31,16 @@ public interface UserMapper {
      */
     @Update("UPDATE users SET password = #{newPassword} WHERE username = #{username}")
     int updatePasswordByUsername(@Param("username") String username, @Param("newPassword") String newPassword);
+    /**
+     * 改
+     * 密码哈希仍是旧值时才替换，登录时按新cost重新哈希用，期间用户改过密码则不覆盖
+     * @param id 用户ID
+     * @param oldPassword 旧密码哈希
+     * @param newPassword 新密码哈希
+     * @return 影响的行数，1为成功
+     */
+    @Update("UPDATE users SET password = #{newPassword} WHERE id = #{id} AND password = #{oldPassword}")
+    int updatePasswordIfUnchanged(@Param("id") Long id, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
     /**
      * 改
      * 根据用户名查询并修改最新登录时间
@@ -34,6 +49,13 @@ public interface UserMapper {
      */
     @Update("UPDATE users SET last_login_time = NOW() WHERE username = #{username}")
     int updateLogintimeByUsername(@Param("username") String username);
+    /**
+     * 改
+     * 批量更新最后登录时间，一条CASE语句更新多行，登录时间写回合并用
+     * @param loginTimes 用户id -> 最后登录时间
+     * @return 影响的行数
+     */
+    int updateLastLoginTimes(@Param("loginTimes") Map<Long, LocalDateTime> loginTimes);
 
 
     /** 查
@@ -49,6 +71,23 @@ public interface UserMapper {
      */
     @Select("SELECT * FROM users ")
     List<User> getAll();
+    /**
+     * 查
+     * 用户总数
+     * @return 用户数
+     */
+    @Select("SELECT COUNT(*) FROM users")
+    long countAll();
+    /**
+     * 查
+     * 流式读出所有用户名和邮箱，逐行交给handler，不把整表放进内存，构建布隆过滤器用
+     * fetchSize=Integer.MIN_VALUE让MySQL驱动按行流式返回
+     * @param handler 每行的处理器，User只有username和email
+     */
+    @Select("SELECT username, email FROM users")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(User.class)
+    void streamAccounts(ResultHandler<User> handler);
     /**
      * 查
      * 根据邮箱查询用户
@@ -57,6 +96,15 @@ public interface UserMapper {
      */
     @Select("SELECT * FROM users WHERE email = #{email}")
     User findByEmail(String email);
+    /**
+     * 查
+     * 登录用，一条语句按用户名或邮箱查询用户，两者都命中时优先用户名
+     * @param account 用户名或邮箱
+     * @return 查找到的用户对象，如果不存在则返回null
+     */
+    @Select("SELECT * FROM users WHERE username = #{account} OR email = #{account} " +
+            "ORDER BY username = #{account} DESC LIMIT 1")
+    User findByUsernameOrEmail(String account);
     /**
      * 查
      * 根据用户ID查询用户
@@ -66,6 +114,56 @@ public interface UserMapper {
     @Select("SELECT * FROM users WHERE id = #{id}")
     User findById(Long id);
 
+    /**
+     * 查
+     * 根据用户ID批量查询用户，列表页批量填充作者信息时缓存未命中的部分一次回源
+     * xml-具体SQL实现见 resources/mapper/UserMapper.xml
+     * @param ids 用户ID列表，不能为空
+     * @return 用户列表，顺序不保证，不存在的ID不返回
+     */
+    List<User> findByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查
+     * 根据用户ID查询Token版本号，无状态认证时校验Token是否仍然有效
+     * @param id 用户ID
+     * @return Token版本号，用户不存在则返回null
+     */
+    @Select("SELECT token_version FROM users WHERE id = #{id}")
+    Integer findTokenVersionById(Long id);
+
+    /**
+     * 改
+     * Token版本号+1，令该用户之前签发的所有Token失效
+     * @param id 用户ID
+     * @return 影响的行数，1为成功
+     */
+    @Update("UPDATE users SET token_version = token_version + 1 WHERE id = #{id}")
+    int incrementTokenVersion(Long id);
+
+    /**
+     * 改
+     * 修改用户封禁状态
+     * @param id 用户ID
+     * @param isBanned 是否封禁
+     * @param banReason 封禁原因，解封时为null
+     * @param banUntil 封禁截止时间，解封时为null
+     * @return 影响的行数，1为成功
+     */
+    @Update("UPDATE users SET is_banned = #{isBanned}, ban_reason = #{banReason}, ban_until = #{banUntil} WHERE id = #{id}")
+    int updateBanStatus(@Param("id") Long id, @Param("isBanned") boolean isBanned,
+                        @Param("banReason") String banReason, @Param("banUntil") LocalDateTime banUntil);
+
+    /**
+     * 改
+     * 修改用户角色
+     * @param id 用户ID
+     * @param role 角色名，如ROLE_ADMIN
+     * @return 影响的行数，1为成功
+     */
+    @Update("UPDATE users SET role = #{role} WHERE id = #{id}")
+    int updateRole(@Param("id") Long id, @Param("role") String role);
+
     /**改
      *根据userId更新user信息
      * @param user
@@ -0,0 +1,135 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Category;
+import com.liu.springbootdemo.mapper.CategoryMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程内分区表
+ * 分区只有几十个、改动很少，全量放内存，发帖、改帖校验分区和取分区名不再查库
+ * 管理员改分区后调用changed，事务提交后本实例重新加载，并通过Redis发布订阅通知其他实例；
+ * 广播丢失时由定时全量刷新兜底
+ * 不含post_count(由发帖增减，不在这里维护)，要展示帖子数的地方仍查库
+ */
+@Slf4j
+@Service
+public class CategoryRegistry implements MessageListener {
+
+    // 重新加载广播频道
+    private static final String RELOAD_CHANNEL = "category:registry:reload";
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // 分区id -> 分区(含禁用)，整体替换，读的时候不加锁
+    private volatile Map<Long, Category> categories;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(RELOAD_CHANNEL));
+    }
+
+    /**
+     * 获取启用中的分区
+     * @param id 分区id
+     * @return 分区，不存在或已禁用返回null；对象是共享的，调用方只读不改
+     */
+    public Category getActive(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Category category = snapshot().get(id);
+        return category != null && Boolean.TRUE.equals(category.getIsActive()) ? category : null;
+    }
+
+    /**
+     * 分区新增、修改、启用禁用、删除后调用
+     * 在事务里调用时等提交后再加载，否则读不到本事务的修改
+     */
+    public void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadAndBroadcast();
+                }
+            });
+        } else {
+            reloadAndBroadcast();
+        }
+    }
+
+    /**
+     * 收到其他实例(也包括自己)的重新加载广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        reloadQuietly();
+    }
+
+    /**
+     * 定时全量刷新，广播丢失或直接改库时兜底
+     */
+    @Scheduled(fixedDelayString = "${community.category-registry.refresh-interval-ms:300000}", initialDelay = 300_000)
+    public void refresh() {
+        reloadQuietly();
+    }
+
+    private Map<Long, Category> snapshot() {
+        Map<Long, Category> current = categories;
+        if (current == null) {
+            synchronized (this) {
+                current = categories;
+                if (current == null) {
+                    current = reload();     // 首次使用时加载，数据库不可用则抛给调用方，下次再试
+                }
+            }
+        }
+        return current;
+    }
+
+    private Map<Long, Category> reload() {
+        Map<Long, Category> loaded = new HashMap<>();
+        for (Category category : categoryMapper.findAll()) {
+            loaded.put(category.getId(), category);
+        }
+        categories = loaded;
+        return loaded;
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("重新加载分区表失败，沿用旧数据：{}", e.getMessage());
+        }
+    }
+
+    private void reloadAndBroadcast() {
+        reloadQuietly();
+        try {
+            stringRedisTemplate.convertAndSend(RELOAD_CHANNEL, "1");
+        } catch (Exception e) {
+            // 其他实例只能等定时刷新
+            log.warn("广播分区表变更失败：{}", e.getMessage());
+        }
+    }
+}
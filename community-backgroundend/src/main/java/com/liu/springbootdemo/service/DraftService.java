@@ -0,0 +1,545 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.dto.DraftDTO;
+import com.liu.springbootdemo.POJO.entity.Category;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.vo.DraftVO;
+import com.liu.springbootdemo.POJO.vo.PostDetailVO;
+import com.liu.springbootdemo.common.annotation.RateLimited;
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.enums.LimitDimension;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.security.LoginUser;
+import com.liu.springbootdemo.common.utils.SecurityUtil;
+import com.liu.springbootdemo.common.utils.TransactionUtil;
+import com.liu.springbootdemo.converter.PostConverter;
+import com.liu.springbootdemo.mapper.PostContentMapper;
+import com.liu.springbootdemo.mapper.PostMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 草稿自动保存
+ * 编辑器每隔几秒把完整内容发过来，只写Redis哈希 post:draft:{userId}:{postId}，并把草稿记进待写库集合(ZSET，分数为第一次未写库修改的时间)；
+ * 定时任务把攒够flush-delay-seconds的草稿写库，期间的多次保存合并成一次UPDATE，每轮最多写flush-batch-size条，主库写入量有上限
+ * 用户点保存、发布，或者走修改帖子接口时立即写库；读草稿优先读Redis，没写库的内容也能读到
+ * 写库(认领、读缓冲、写库)和发布都在草稿锁(SET NX)里做，同一份草稿同一时刻只有一个实例在写；
+ * 发布时别的实例正在写库会等它写完，不会读到库里的旧内容发布出去，也不会被它随后清掉缓冲
+ * 删除帖子、管理员改状态不拿草稿锁，提交后直接清缓冲；发布只改仍是草稿的行，和删除并发时不会把删掉的帖子发布出去
+ * Redis不可用时自动保存直接写库，不丢内容
+ */
+@Slf4j
+@Service
+public class DraftService {
+
+    private static final String KEY_PREFIX = "post:draft:";
+    // 待写库的草稿，成员为 userId:postId
+    private static final String DIRTY_KEY = "post:draft:dirty";
+    private static final String LOCK_PREFIX = "post:draft:lock:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private PostContentMapper postContentMapper;
+    @Autowired
+    private PostCacheService postCacheService;
+    @Autowired
+    private PostCountService postCountService;
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+    @Autowired
+    private PostConverter postConverter;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PostSearchService postSearchService;
+    @Autowired
+    private RedisScript<Long> releaseLockScript;
+
+    // 第一次未写库的修改之后多久写库，期间的保存都合并
+    @Value("${community.draft.flush-delay-seconds:30}")
+    private long flushDelaySeconds;
+    // 每轮最多写库的草稿数
+    @Value("${community.draft.flush-batch-size:200}")
+    private int flushBatchSize;
+    // 草稿在Redis里保留的小时数，每次保存续期，过期后从库里读
+    @Value("${community.draft.ttl-hours:72}")
+    private long ttlHours;
+    // 草稿锁秒数，应大于一次写库的耗时；保存、发布最多等锁的毫秒数
+    @Value("${community.draft.lock-seconds:10}")
+    private long lockSeconds;
+    @Value("${community.draft.lock-wait-ms:3000}")
+    private long lockWaitMillis;
+
+    /**
+     * 新建草稿，直接写库拿到帖子id，之后的编辑走autosave
+     * @param draft 草稿内容，分区必传
+     * @return 草稿
+     */
+    @RateLimited(name = "draft", dimension = LimitDimension.USER, permits = 10, window = 60)
+    public DraftVO createDraft(DraftDTO draft) {
+        LoginUser currentUser = requireLogin();
+        Category category = categoryRegistry.getActive(draft.getCategoryId());
+        if (category == null) {
+            throw new BusinessException(ErrorCode.CATEGORY_NOT_FOUND, "分区不存在或已被锁定，无法在该分区下创建草稿");
+        }
+        Post post = toPost(toHash(draft, System.currentTimeMillis()));
+        post.setUserId(currentUser.getId());
+        post.setCategoryName(category.getName());
+        post.setStatus(PostStatus.DRAFT.getStatus());
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        post.setCreateTime(now);
+        post.setUpdateTime(now);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (postMapper.insert(post) != 1) {
+                throw new BusinessException(ErrorCode.SQL_ERROR, "草稿创建失败，数据库插入行数不为1");
+            }
+            postContentMapper.upsert(post.getId(), post.getContent());
+        });
+        postCacheService.evict(post.getId());
+        postCountService.onCreate(post);
+        return toVO(post, true);
+    }
+
+    /**
+     * 自动保存，只写Redis
+     * @param postId 草稿的帖子id
+     * @param draft 编辑器里的完整内容
+     * @return 保存后的草稿
+     */
+    @RateLimited(name = "draftAutosave", dimension = LimitDimension.USER, permits = 60, window = 60)
+    public DraftVO autosave(Long postId, DraftDTO draft) {
+        LoginUser currentUser = requireLogin();
+        requireOwnDraft(postId, currentUser);
+        Long userId = currentUser.getId();
+        long now = System.currentTimeMillis();
+        String key = key(userId, postId);
+        Map<String, String> fields = toHash(draft, now);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection c = (StringRedisConnection) connection;
+                c.hMSet(key, fields);
+                c.expire(key, ttlHours * 3600);
+                c.zAdd(DIRTY_KEY, now, member(userId, postId), ZAddArgs.ifNotExists());
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("草稿{}写入Redis失败，直接写库：{}", postId, e.getMessage());
+            persist(userId, postId, fields);
+            return toVO(postId, fields, true);
+        }
+        return toVO(postId, fields, false);
+    }
+
+    /**
+     * 读草稿，优先读Redis里的最新内容
+     * @param postId 草稿的帖子id
+     * @return 草稿
+     */
+    @SuppressWarnings("unchecked")
+    public DraftVO getDraft(Long postId) {
+        LoginUser currentUser = requireLogin();
+        requireOwnDraft(postId, currentUser);
+        Long userId = currentUser.getId();
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection c = (StringRedisConnection) connection;
+                c.hGetAll(key(userId, postId));
+                c.zScore(DIRTY_KEY, member(userId, postId));
+                return null;
+            });
+            Map<String, String> fields = (Map<String, String>) results.get(0);
+            if (fields != null && !fields.isEmpty()) {
+                return toVO(postId, fields, results.get(1) == null);
+            }
+        } catch (Exception e) {
+            log.warn("Redis读取草稿{}失败，回源数据库：{}", postId, e.getMessage());
+        }
+        Post post = postMapper.findById(postId);
+        if (post == null) {
+            throw new BusinessException(ErrorCode.POST_NOT_FOUND);
+        }
+        return toVO(post, true);
+    }
+
+    /**
+     * 手动保存，缓冲里没写库的内容立即写库
+     * @param postId 草稿的帖子id
+     * @return 保存后的草稿
+     */
+    public DraftVO save(Long postId) {
+        LoginUser currentUser = requireLogin();
+        requireOwnDraft(postId, currentUser);
+        String lockToken = lock(currentUser.getId(), postId, true);
+        try {
+            flushIfDirty(currentUser.getId(), postId);
+        } finally {
+            unlock(currentUser.getId(), postId, lockToken);
+        }
+        return getDraft(postId);
+    }
+
+    /**
+     * 发布草稿，先把缓冲写库，再校验内容完整后改为已发布
+     * 与发帖接口一致，直接发布不经审核
+     * @param postId 草稿的帖子id
+     * @return 发布后的帖子
+     */
+    public PostDetailVO publish(Long postId) {
+        LoginUser currentUser = requireLogin();
+        requireOwnDraft(postId, currentUser);
+        // 从写库到清掉缓冲都持有草稿锁：别的实例已认领还没写完的要等它写完，发布后也不会再有实例写这份缓冲
+        String lockToken = lock(currentUser.getId(), postId, true);
+        try {
+            return publishLocked(currentUser, postId);
+        } finally {
+            unlock(currentUser.getId(), postId, lockToken);
+        }
+    }
+
+    private PostDetailVO publishLocked(LoginUser currentUser, Long postId) {
+        flushIfDirty(currentUser.getId(), postId);
+
+        Post post = postMapper.findById(postId);
+        if (post == null || post.getStatus() != PostStatus.DRAFT.getStatus()) {
+            throw new BusinessException(ErrorCode.POST_NOT_FOUND, "草稿不存在或已发布");
+        }
+        if (!StringUtils.hasText(post.getTitle())) {
+            throw new BusinessException(ErrorCode.POST_TITLE_EMPTY);
+        }
+        if (!StringUtils.hasText(post.getContent())) {
+            throw new BusinessException(ErrorCode.POST_CONTENT_EMPTY);
+        }
+        if (!StringUtils.hasText(post.getSummary())) {
+            throw new BusinessException(ErrorCode.INPUT_INVALID, "简介不能为空");
+        }
+        if (categoryRegistry.getActive(post.getCategoryId()) == null) {
+            throw new BusinessException(ErrorCode.CATEGORY_NOT_FOUND, "分区不存在或已被锁定，无法发布到该分区");
+        }
+        // 删除帖子不拿草稿锁，上面检查完到这里之间可能已被删除，只发布仍是草稿的行
+        if (postMapper.publishDraft(postId) != 1) {
+            throw new BusinessException(ErrorCode.POST_NOT_FOUND, "草稿不存在或已发布");
+        }
+        postCacheService.evict(postId);
+        postCountService.onStatusChange(post, PostStatus.PUBLISHED.getStatus());
+        postSearchService.onChanged(postId);
+        discard(post);
+        log.info("用户[{}]发布了草稿: [{}], ID: {}", currentUser.getUsername(), post.getTitle(), postId);
+
+        post.setStatus(PostStatus.PUBLISHED.getStatus());
+        return postConverter.toDetailVO(post);
+    }
+
+    /**
+     * 修改帖子接口改草稿前调用，先把缓冲写库，修改再覆盖在上面
+     * 在调用方的事务里时，草稿锁持有到事务结束：写进去的草稿提交前别的实例不能发布；回滚了把缓冲放回待写库集合
+     * @param post 修改前的帖子，需带id、userId、status
+     * @return 是否写了库，写了的话调用方手里的帖子已不是最新
+     */
+    public boolean flush(Post post) {
+        if (post.getStatus() != PostStatus.DRAFT.getStatus()) {
+            return false;
+        }
+        Long userId = post.getUserId();
+        Long postId = post.getId();
+        String lockToken = lock(userId, postId, true);
+        boolean flushed;
+        try {
+            flushed = flushIfDirty(userId, postId);
+        } catch (RuntimeException e) {
+            unlock(userId, postId, lockToken);
+            throw e;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unlock(userId, postId, lockToken);
+            return flushed;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (flushed && status != STATUS_COMMITTED) {
+                    markDirty(member(userId, postId));
+                }
+                unlock(userId, postId, lockToken);
+            }
+        });
+        return flushed;
+    }
+
+    /**
+     * 草稿被删除或改了状态后调用，丢掉缓冲
+     * @param post 帖子，需带id、userId、status(修改前)
+     */
+    public void discard(Post post) {
+        if (post.getStatus() != PostStatus.DRAFT.getStatus()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection c = (StringRedisConnection) connection;
+                c.del(key(post.getUserId(), post.getId()));
+                c.zRem(DIRTY_KEY, member(post.getUserId(), post.getId()));
+                return null;
+            });
+        } catch (Exception e) {
+            // 留下的缓冲写库时会因为已不是草稿被跳过，最多ttl-hours后过期
+            log.warn("清除草稿{}的缓冲失败：{}", post.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 定时写库，只写攒够flush-delay-seconds的草稿
+     */
+    @Scheduled(fixedDelayString = "${community.draft.flush-interval-ms:5000}", initialDelay = 5000)
+    public void flushDue() {
+        Set<String> due;
+        try {
+            long deadline = System.currentTimeMillis() - flushDelaySeconds * 1000;
+            due = stringRedisTemplate.opsForZSet().rangeByScore(DIRTY_KEY, 0, deadline, 0, flushBatchSize);
+        } catch (Exception e) {
+            log.warn("读取待写库草稿失败，下次再试：{}", e.getMessage());
+            return;
+        }
+        if (due == null) {
+            return;
+        }
+        for (String member : due) {
+            int split = member.indexOf(':');
+            Long userId = Long.valueOf(member.substring(0, split));
+            Long postId = Long.valueOf(member.substring(split + 1));
+            String lockToken = lock(userId, postId, false);
+            if (lockToken == null) {
+                continue;   // 正在被保存、发布或其他实例写库
+            }
+            try {
+                flushIfDirty(userId, postId);
+            } catch (Exception e) {
+                log.warn("草稿{}写库失败，稍后重试：{}", postId, e.getMessage());
+            } finally {
+                unlock(userId, postId, lockToken);
+            }
+        }
+    }
+
+    /**
+     * 从待写库集合里认领并写库，先摘再读，读之后的新保存会重新进集合
+     * 调用方需持有草稿锁：没认领到说明没有未写库的修改，别的实例认领后也是在锁里写完才放锁
+     * @return 是否写了库
+     */
+    private boolean flushIfDirty(Long userId, Long postId) {
+        String member = member(userId, postId);
+        Map<String, String> fields;
+        try {
+            Long removed = stringRedisTemplate.opsForZSet().remove(DIRTY_KEY, member);
+            if (removed == null || removed == 0) {
+                return false;   // 没有未写库的修改
+            }
+            fields = stringRedisTemplate.<String, String>opsForHash().entries(key(userId, postId));
+        } catch (Exception e) {
+            log.warn("读取草稿{}的缓冲失败：{}", postId, e.getMessage());
+            return false;
+        }
+        if (fields.isEmpty()) {
+            return false;
+        }
+        try {
+            persist(userId, postId, fields);
+        } catch (RuntimeException e) {
+            markDirty(member);
+            throw e;
+        }
+        return true;
+    }
+
+    private void persist(Long userId, Long postId, Map<String, String> fields) {
+        Post draft = toPost(fields);
+        draft.setUpdateTime(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        Category category = categoryRegistry.getActive(draft.getCategoryId());
+        if (category != null) {
+            draft.setCategoryName(category.getName());
+        } else {
+            draft.setCategoryId(null);  // 分区不可用时不改分区
+        }
+        Post before = transactionTemplate.execute(status -> {
+            Post postInDb = postMapper.findBriefById(postId);
+            if (postInDb == null || !postInDb.getUserId().equals(userId)
+                    || postMapper.saveDraft(postId, draft) != 1) {
+                return null;    // 已删除或已不是草稿
+            }
+            postContentMapper.upsert(postId, draft.getContent());
+            postContentMapper.clearPostsContent(postId);
+            // 修改帖子接口调用时在它的事务里，等提交后再删缓存、改计数
+            TransactionUtil.afterCommit(() -> {
+                postCacheService.evict(postId);
+                postCountService.onCategoryChange(postInDb, draft.getCategoryId());
+            });
+            return postInDb;
+        });
+        if (before == null) {
+            // 帖子已不是草稿：发布在草稿锁里清缓冲，删除、改状态提交后才清且不拿锁，
+            // 走到这里说明缓冲是之后才写进来的或还没来得及清，已没有用
+            discard(draftOf(userId, postId));
+        }
+    }
+
+    /**
+     * 加草稿锁
+     * @param wait 是否等待，最多等lock-wait-ms毫秒，等不到抛SYSTEM_BUSY
+     * @return 锁令牌，不等待且没拿到返回null；Redis不可用时不加锁直接返回令牌(缓冲也读不到，不会写库)
+     */
+    private String lock(Long userId, Long postId, boolean wait) {
+        String lockKey = LOCK_PREFIX + member(userId, postId);
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + lockWaitMillis;
+        try {
+            while (true) {
+                Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, lockSeconds, TimeUnit.SECONDS);
+                if (Boolean.TRUE.equals(locked)) {
+                    return token;
+                }
+                if (!wait) {
+                    return null;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new BusinessException(ErrorCode.SYSTEM_BUSY, "草稿正在保存，请稍后重试");
+                }
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_BUSY, "草稿正在保存，请稍后重试");
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("获取草稿{}的锁失败，不加锁继续：{}", postId, e.getMessage());
+            return token;
+        }
+    }
+
+    private void unlock(Long userId, Long postId, String token) {
+        try {
+            stringRedisTemplate.execute(releaseLockScript, List.of(LOCK_PREFIX + member(userId, postId)), token);
+        } catch (Exception e) {
+            log.warn("释放草稿{}的锁失败，{}秒后自动过期：{}", postId, lockSeconds, e.getMessage());
+        }
+    }
+
+    private void markDirty(String member) {
+        try {
+            stringRedisTemplate.opsForZSet().addIfAbsent(DIRTY_KEY, member, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("草稿{}放回待写库集合失败，下次保存时再写：{}", member, e.getMessage());
+        }
+    }
+
+    private Post requireOwnDraft(Long postId, LoginUser currentUser) {
+        // 走详情缓存，草稿在缓存里只有id、userId、status，正好够校验
+        Post post = postCacheService.getById(postId);
+        if (post == null || post.getStatus() == PostStatus.DELETED.getStatus()) {
+            throw new BusinessException(ErrorCode.POST_NOT_FOUND, "草稿不存在");
+        }
+        if (!post.getUserId().equals(currentUser.getId())) {
+            throw new BusinessException(ErrorCode.POST_NOT_AUTHOR, "草稿不属于当前用户[" + currentUser.getUsername() + "]");
+        }
+        if (post.getStatus() != PostStatus.DRAFT.getStatus()) {
+            throw new BusinessException(ErrorCode.INPUT_INVALID, "帖子已不是草稿，请用修改帖子接口");
+        }
+        return post;
+    }
+
+    private static LoginUser requireLogin() {
+        LoginUser currentUser = SecurityUtil.getLoginUser();
+        if (currentUser == null) {
+            throw new BusinessException(ErrorCode.UNAUTHORIZED, "Unbelievable! 你是怎么进来的，谁让你没登录就进来的!💢 滚出去😡*");
+        }
+        return currentUser;
+    }
+
+    private static String key(Long userId, Long postId) {
+        return KEY_PREFIX + userId + ":" + postId;
+    }
+
+    private static String member(Long userId, Long postId) {
+        return userId + ":" + postId;
+    }
+
+    private static Post draftOf(Long userId, Long postId) {
+        Post post = new Post();
+        post.setId(postId);
+        post.setUserId(userId);
+        post.setStatus(PostStatus.DRAFT.getStatus());
+        return post;
+    }
+
+    // 哈希里null存成空串，保证每次保存覆盖全部字段
+    private static Map<String, String> toHash(DraftDTO draft, long savedAt) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("title", nullToEmpty(draft.getTitle()));
+        fields.put("content", nullToEmpty(draft.getContent()));
+        fields.put("summary", nullToEmpty(draft.getSummary()));
+        fields.put("coverImage", nullToEmpty(draft.getCoverImage()));
+        fields.put("categoryId", draft.getCategoryId() == null ? "" : draft.getCategoryId().toString());
+        fields.put("savedAt", Long.toString(savedAt));
+        return fields;
+    }
+
+    private static Post toPost(Map<String, String> fields) {
+        Post post = new Post();
+        post.setTitle(fields.getOrDefault("title", ""));
+        post.setContent(fields.getOrDefault("content", ""));
+        post.setSummary(fields.getOrDefault("summary", ""));
+        post.setCoverImage(StringUtils.hasText(fields.get("coverImage")) ? fields.get("coverImage") : null);
+        post.setCategoryId(StringUtils.hasText(fields.get("categoryId")) ? Long.valueOf(fields.get("categoryId")) : null);
+        return post;
+    }
+
+    private static DraftVO toVO(Long postId, Map<String, String> fields, boolean persisted) {
+        Post post = toPost(fields);
+        post.setId(postId);
+        post.setUpdateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(fields.get("savedAt"))), ZoneId.systemDefault()));
+        return toVO(post, persisted);
+    }
+
+    private static DraftVO toVO(Post post, boolean persisted) {
+        DraftVO vo = new DraftVO();
+        vo.setPostId(post.getId());
+        vo.setTitle(post.getTitle());
+        vo.setContent(post.getContent());
+        vo.setSummary(post.getSummary());
+        vo.setCategoryId(post.getCategoryId());
+        vo.setCoverImage(post.getCoverImage());
+        vo.setSavedAt(post.getUpdateTime());
+        vo.setPersisted(persisted);
+        return vo;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,254 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.EmailOutbox;
+import com.liu.springbootdemo.common.enums.OutboxStatus;
+import com.liu.springbootdemo.mapper.EmailOutboxMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 邮件发件箱投递
+ * 定时从email_outbox认领一批到期邮件，交给固定数量的投递线程；
+ * 一批邮件通过JavaMailSender.send(MimeMessage...)共用一次SMTP连接(一次TLS握手)发出，
+ * 失败的按指数退避重试，次数用完标记失败
+ * 指标：email.outbox.sent / retry / failed(封数)、email.outbox.batch(每批耗时)、email.outbox.busy-workers
+ */
+@Slf4j
+@Service
+public class EmailOutboxDispatcher {
+
+    @Autowired
+    private EmailOutboxMapper emailOutboxMapper;
+    @Autowired
+    private JavaMailSender mailSender;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+    // 投递线程数，即同时打开的SMTP连接数上限
+    @Value("${community.mail-outbox.workers:2}")
+    private int workers;
+    // 每批(每次SMTP连接)最多发送的邮件数
+    @Value("${community.mail-outbox.batch-size:20}")
+    private int batchSize;
+    @Value("${community.mail-outbox.max-attempts:5}")
+    private int maxAttempts;
+    // 第n次失败后等待 retry-base-seconds * 2^(n-1) 秒再试，最多等1小时
+    @Value("${community.mail-outbox.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+    // 认领后超过该分钟数仍未完成的视为实例宕机，重新放回待发送
+    @Value("${community.mail-outbox.claim-timeout-minutes:5}")
+    private long claimTimeoutMinutes;
+
+    private ExecutorService executor;
+    // 空闲投递线程数，认领前先拿许可，保证认领的批次都有线程立即处理
+    private Semaphore idleWorkers;
+    private Counter sentCounter;
+    private Counter retryCounter;
+    private Counter failedCounter;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mail-outbox-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        idleWorkers = new Semaphore(workers);
+        sentCounter = Counter.builder("email.outbox.sent").register(meterRegistry);
+        retryCounter = Counter.builder("email.outbox.retry").register(meterRegistry);
+        failedCounter = Counter.builder("email.outbox.failed").register(meterRegistry);
+        batchTimer = Timer.builder("email.outbox.batch").description("每批邮件的SMTP发送耗时").register(meterRegistry);
+        Gauge.builder("email.outbox.busy-workers", idleWorkers, s -> workers - s.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        // 正在发的批次尽量发完，没发完的认领超时后由其他实例接手
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 有空闲线程就认领一批交给它，直到没有到期邮件或线程全忙
+     */
+    @Scheduled(fixedDelayString = "${community.mail-outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        while (idleWorkers.tryAcquire()) {
+            List<EmailOutbox> batch;
+            try {
+                batch = claim();
+            } catch (Exception e) {
+                idleWorkers.release();
+                log.warn("认领待发送邮件失败：{}", e.toString());
+                return;
+            }
+            if (batch.isEmpty()) {
+                idleWorkers.release();
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    deliver(batch);
+                } finally {
+                    idleWorkers.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * 释放认领超时的邮件
+     */
+    @Scheduled(fixedDelayString = "${community.mail-outbox.release-interval-ms:60000}")
+    public void releaseStaleClaims() {
+        try {
+            int released = emailOutboxMapper.releaseStaleClaims(LocalDateTime.now().minusMinutes(claimTimeoutMinutes));
+            if (released > 0) {
+                log.warn("{}封邮件认领超时，已放回待发送", released);
+            }
+        } catch (Exception e) {
+            log.warn("释放超时认领的邮件失败：{}", e.getMessage());
+        }
+    }
+
+    private List<EmailOutbox> claim() {
+        String owner = UUID.randomUUID().toString();
+        if (emailOutboxMapper.claimBatch(owner, batchSize) == 0) {
+            return List.of();
+        }
+        return emailOutboxMapper.findClaimed(owner);
+    }
+
+    /**
+     * 用一次SMTP连接发送一批邮件，并按结果更新发件箱
+     * @param batch 已认领的邮件
+     */
+    public void deliver(List<EmailOutbox> batch) {
+        Map<MimeMessage, EmailOutbox> messages = new IdentityHashMap<>();
+        for (EmailOutbox mail : batch) {
+            try {
+                messages.put(toMimeMessage(mail), mail);
+            } catch (MessagingException e) {
+                // 地址格式等问题，重试也不会好
+                giveUp(mail, mail.getAttempts() + 1, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failedMessages = Map.of();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) { // 没有逐封的失败信息，按整批失败处理
+                failedMessages = new IdentityHashMap<>();
+                for (MimeMessage message : messages.keySet()) {
+                    failedMessages.put(message, e);
+                }
+            }
+        } catch (MailException e) {
+            // 连接、认证失败等，整批重试
+            failedMessages = new IdentityHashMap<>();
+            for (MimeMessage message : messages.keySet()) {
+                failedMessages.put(message, e);
+            }
+        } finally {
+            sample.stop(batchTimer);
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        for (Map.Entry<MimeMessage, EmailOutbox> entry : messages.entrySet()) {
+            Exception failure = failedMessages.get(entry.getKey());
+            if (failure == null) {
+                sentIds.add(entry.getValue().getId());
+            } else {
+                retryLater(entry.getValue(), failure);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            String owner = batch.get(0).getOwner();
+            int marked = emailOutboxMapper.markSent(owner, sentIds);
+            if (marked < sentIds.size()) {
+                // 发送耗时超过认领超时，已被放回待发送，其他批次可能会再发一次
+                log.warn("批次{}有{}封邮件的认领已超时被放回，未标记为已发送", owner, sentIds.size() - marked);
+            }
+            sentCounter.increment(sentIds.size());
+            log.info("本批发送邮件{}封，失败{}封", sentIds.size(), messages.size() - sentIds.size());
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox mail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        // 发件人显示名称，邮箱地址必须是 spring.mail.username 配置的账号，否则会被 139 服务器拒绝
+        helper.setFrom("TechForum <" + fromEmail + ">");
+        helper.setTo(mail.getToAddress());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getContent());
+        return message;
+    }
+
+    private void retryLater(EmailOutbox mail, Exception failure) {
+        int attempts = mail.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            giveUp(mail, attempts, failure);
+            return;
+        }
+        long delaySeconds = Math.min(retryBaseSeconds << (attempts - 1), TimeUnit.HOURS.toSeconds(1));
+        emailOutboxMapper.markAttemptFailed(mail.getId(), mail.getOwner(), OutboxStatus.PENDING.getStatus(), attempts,
+                LocalDateTime.now().plusSeconds(delaySeconds), abbreviate(failure));
+        retryCounter.increment();
+        log.warn("邮件{}发送给{}失败(第{}次)，{}秒后重试：{}", mail.getId(), mail.getToAddress(), attempts, delaySeconds, failure.getMessage());
+    }
+
+    private void giveUp(EmailOutbox mail, int attempts, Exception failure) {
+        emailOutboxMapper.markAttemptFailed(mail.getId(), mail.getOwner(), OutboxStatus.FAILED.getStatus(), attempts,
+                LocalDateTime.now(), abbreviate(failure));
+        failedCounter.increment();
+        log.error("邮件{}发送给{}失败{}次，已放弃：{}", mail.getId(), mail.getToAddress(), attempts, failure.getMessage());
+    }
+
+    // last_error列长500
+    private static String abbreviate(Exception e) {
+        String message = String.valueOf(e.getMessage());
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
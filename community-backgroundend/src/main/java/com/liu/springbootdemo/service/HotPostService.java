@@ -0,0 +1,193 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.mapper.PostMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热门帖子榜
+ * 热度 = (点赞*like-weight + 评论*comment-weight + 浏览*view-weight) / (发布小时数 + 2)^gravity，越新越高、随时间衰减
+ * 分数存Redis ZSET：浏览、评论发生时按当前时刻的衰减系数算出增量，本地合并后定时批量ZINCRBY；
+ * 增量只反映发生时刻的权重，之后的衰减由定时重算纠正：取窗口期内已发布帖子按公式整体重算，写临时key后RENAME替换
+ * 分页用ZREVRANGE取id，再从帖子概要缓存批量取数据；Redis不可用时回退按idx_hot(点赞、评论、浏览)排序查库
+ */
+@Slf4j
+@Service
+public class HotPostService {
+
+    private static final String KEY = "post:hot";
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private PostCacheService postCacheService;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${community.hot-post.gravity:1.8}")
+    private double gravity;
+    @Value("${community.hot-post.like-weight:3}")
+    private double likeWeight;
+    @Value("${community.hot-post.comment-weight:5}")
+    private double commentWeight;
+    @Value("${community.hot-post.view-weight:0.1}")
+    private double viewWeight;
+    // 只有发布不超过这么多天的帖子进榜
+    @Value("${community.hot-post.window-days:7}")
+    private int windowDays;
+    // 榜单最多保留的帖子数
+    @Value("${community.hot-post.max-size:1000}")
+    private int maxSize;
+
+    // 本地累积的分数增量：帖子id -> 增量
+    private final ConcurrentHashMap<Long, Double> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 帖子被浏览
+     * @param post 已发布的帖子，需带createTime
+     */
+    public void onView(Post post) {
+        addScore(post, viewWeight);
+    }
+
+    /**
+     * 帖子被评论
+     * @param post 已发布的帖子，需带createTime
+     */
+    public void onComment(Post post) {
+        addScore(post, commentWeight);
+    }
+
+    /**
+     * 帖子下榜，删除或改为非发布状态时调用
+     * @param postId 帖子id
+     */
+    public void remove(Long postId) {
+        pending.remove(postId);
+        try {
+            stringRedisTemplate.opsForZSet().remove(KEY, postId.toString());
+        } catch (Exception e) {
+            log.warn("热榜移除帖子{}失败，下次重算时移除：{}", postId, e.getMessage());
+        }
+    }
+
+    /**
+     * 热门帖子分页
+     * @param page 页码，从0开始
+     * @param size 每页条数
+     * @return 帖子概要列表，按热度从高到低
+     */
+    public List<PostSummaryVO> getHotPosts(int page, int size) {
+        long start = (long) page * size;
+        if (start >= maxSize) {
+            return List.of();
+        }
+        Set<String> ids;
+        try {
+            ids = stringRedisTemplate.opsForZSet().reverseRange(KEY, start, start + size - 1);
+        } catch (Exception e) {
+            log.warn("读取热榜失败，回退查库：{}", e.getMessage());
+            return postMapper.findHotByCounts((int) start, size);
+        }
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return postCacheService.getSummaries(ids.stream().map(Long::valueOf).toList());
+    }
+
+    /**
+     * 本地增量批量合并到Redis
+     */
+    @Scheduled(fixedDelayString = "${community.hot-post.merge-interval-ms:5000}")
+    public void mergeToRedis() {
+        Map<Long, Double> deltas = new HashMap<>();
+        for (Long postId : pending.keySet()) {
+            Double delta = pending.remove(postId);
+            if (delta != null) {
+                deltas.put(postId, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                deltas.forEach((postId, delta) -> stringConnection.zIncrBy(KEY, delta, postId.toString()));
+                return null;
+            });
+        } catch (Exception e) {
+            // 热度是近似值，丢掉这批增量，下次重算时补回
+            log.warn("合并{}个帖子的热度增量失败：{}", deltas.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按公式整体重算窗口期内帖子的热度，纠正衰减
+     */
+    @Scheduled(fixedDelayString = "${community.hot-post.rescore-interval-ms:600000}", initialDelay = 15_000)
+    public void rescore() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Post> candidates = postMapper.findHotCandidates(now.minusDays(windowDays));
+            List<ZSetOperations.TypedTuple<String>> scored = new ArrayList<>(candidates.size());
+            for (Post post : candidates) {
+                double points = post.getLikeCount() * likeWeight
+                        + post.getCommentCount() * commentWeight
+                        + post.getViewCount() * viewWeight;
+                scored.add(new DefaultTypedTuple<>(post.getId().toString(), points / decay(post.getCreateTime(), now)));
+            }
+            scored.sort(Comparator.comparing(ZSetOperations.TypedTuple<String>::getScore).reversed());
+            if (scored.size() > maxSize) {
+                scored = scored.subList(0, maxSize);
+            }
+            if (scored.isEmpty()) {
+                stringRedisTemplate.delete(KEY);
+                return;
+            }
+            String tmpKey = KEY + ":tmp:" + UUID.randomUUID();
+            stringRedisTemplate.opsForZSet().add(tmpKey, new HashSet<>(scored));
+            stringRedisTemplate.rename(tmpKey, KEY);
+            log.info("热榜已重算，{}个候选帖子，保留{}个", candidates.size(), scored.size());
+        } catch (Exception e) {
+            log.warn("重算热榜失败：{}", e.getMessage());
+        }
+    }
+
+    private void addScore(Post post, double weight) {
+        if (post.getStatus() != PostStatus.PUBLISHED.getStatus() || post.getCreateTime() == null
+                || post.getCreateTime().isBefore(LocalDateTime.now().minusDays(windowDays))) {
+            return;
+        }
+        pending.merge(post.getId(), weight / decay(post.getCreateTime(), LocalDateTime.now()), Double::sum);
+    }
+
+    // 衰减系数 (发布小时数 + 2)^gravity
+    private double decay(LocalDateTime createTime, LocalDateTime now) {
+        double ageHours = Math.max(Duration.between(createTime, now).toMinutes(), 0) / 60.0;
+        return Math.pow(ageHours + 2, gravity);
+    }
+}
@@ -0,0 +1,88 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.mapper.UserMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最后登录时间写回合并
+ * 登录时只在内存里记一笔，同一用户多次登录只保留最新时间；
+ * 定时把积攒的记录分批用一条CASE UPDATE写回users表，应用关闭前再写一次
+ * 代价：宕机(非正常关闭)时最多丢失一个写回周期内的登录时间
+ */
+@Slf4j
+@Service
+public class LoginTimeRecorder {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    // 每条UPDATE最多更新的行数，避免语句过长
+    @Value("${community.login-time.batch-size:500}")
+    private int batchSize;
+
+    // 待写回的登录时间：用户id -> 最后登录时间
+    private final ConcurrentHashMap<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录用户登录
+     * @param userId 用户id
+     */
+    public void record(Long userId) {
+        pending.merge(userId, LocalDateTime.now(), (oldTime, newTime) -> newTime.isAfter(oldTime) ? newTime : oldTime);
+    }
+
+    /**
+     * 定时写回，间隔见community.login-time.flush-interval-ms
+     */
+    @Scheduled(fixedDelayString = "${community.login-time.flush-interval-ms:10000}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            Map<Long, LocalDateTime> batch = new HashMap<>();
+            Iterator<Long> ids = pending.keySet().iterator();
+            while (ids.hasNext() && batch.size() < batchSize) {
+                Long id = ids.next();
+                LocalDateTime time = pending.remove(id);    // 取出即移除，期间新登录会重新放入下一批
+                if (time != null) {
+                    batch.put(id, time);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                userMapper.updateLastLoginTimes(batch);
+            } catch (Exception e) {
+                // 写回失败放回去等下次，已有更新的记录时保留更新的
+                batch.forEach(this::restore);
+                log.warn("批量写回{}条登录时间失败，下次重试：{}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的登录时间写回
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("应用关闭，{}条登录时间未能写回", pending.size());
+        }
+    }
+
+    private void restore(Long userId, LocalDateTime time) {
+        pending.merge(userId, time, (newer, older) -> newer.isAfter(older) ? newer : older);
+    }
+}
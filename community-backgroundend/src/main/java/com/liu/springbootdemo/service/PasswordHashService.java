@@ -0,0 +1,161 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.mapper.UserMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希服务
+ * BCrypt是故意做慢的CPU密集运算，放在独立的有界线程池里跑，不占用Tomcat请求线程；
+ * 队列满或等待超时直接返回503，登录/注册洪峰时不拖垮其他接口
+ * 指标：password.hash.queue(排队数)、password.hash{op}(耗时)、password.hash.rejected(拒绝次数)
+ */
+@Slf4j
+@Service
+public class PasswordHashService {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${community.password.bcrypt-strength:10}")
+    private int strength;
+    // 哈希线程数，默认CPU核数
+    @Value("${community.password.hash-threads:0}")
+    private int hashThreads;
+    // 排队上限，超出直接拒绝
+    @Value("${community.password.hash-queue-capacity:64}")
+    private int queueCapacity;
+    // 请求线程最多等待毫秒数(含排队)
+    @Value("${community.password.hash-timeout-ms:3000}")
+    private long timeoutMillis;
+
+    private ThreadPoolExecutor executor;
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("password.hash.queue", executor, e -> e.getQueue().size())
+                .description("等待哈希的任务数").register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("正在哈希的线程数").register(meterRegistry);
+        encodeTimer = Timer.builder("password.hash").tag("op", "encode").register(meterRegistry);
+        matchesTimer = Timer.builder("password.hash").tag("op", "matches").register(meterRegistry);
+        rejected = Counter.builder("password.hash.rejected")
+                .description("线程池饱和或等待超时被拒绝的次数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 加密密码，注册、改密码用
+     * @param rawPassword 明文密码
+     * @return BCrypt哈希
+     */
+    public String encode(String rawPassword) {
+        return submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * 校验密码
+     * @param rawPassword 明文密码
+     * @param encodedPassword 数据库里的哈希
+     * @return 是否匹配
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return submit(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * 哈希的cost和当前配置不同时，后台按新cost重新哈希并写回，登录成功后调用
+     * 线程池忙时直接跳过，下次登录再试
+     * @param userId 用户id
+     * @param rawPassword 已校验通过的明文密码
+     * @param encodedPassword 数据库里的旧哈希
+     */
+    public void rehashIfNeeded(Long userId, String rawPassword, String encodedPassword) {
+        if (costOf(encodedPassword) == strength) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                String newPassword = encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+                if (userMapper.updatePasswordIfUnchanged(userId, encodedPassword, newPassword) == 1) {
+                    log.info("用户{}的密码已按cost={}重新哈希", userId, strength);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("哈希线程池繁忙，跳过用户{}的重新哈希", userId);
+        }
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusinessException(ErrorCode.SYSTEM_BUSY, "当前登录/注册人数过多，请稍后重试");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new BusinessException(ErrorCode.SYSTEM_BUSY, "当前登录/注册人数过多，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_BUSY, e);
+        } catch (ExecutionException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "密码哈希失败", e.getCause());
+        }
+    }
+
+    // 从$2a$10$...格式的哈希中取出cost，格式不对返回-1(同样触发重新哈希)
+    private static int costOf(String encodedPassword) {
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
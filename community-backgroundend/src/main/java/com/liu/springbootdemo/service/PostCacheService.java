@@ -0,0 +1,316 @@
+package com.liu.springbootdemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.common.utils.CacheJsonUtil;
+import com.liu.springbootdemo.mapper.PostMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帖子详情缓存(cache-aside)
+ * 查询顺序：Redis -> MySQL，Redis不可用时直接回源MySQL
+ * 穿透：不存在的id缓存空值；非已发布的帖子只缓存id/作者/状态(不含正文)，都用短TTL
+ * 击穿：同一实例内同一个id同时未命中只有一个线程回源，其余等它的结果
+ * 雪崩：TTL加随机抖动，避免同一批帖子同时过期
+ * 批量：一次MGET取多个帖子，未命中的用一条IN查询回源，再用管道一次写回
+ * 缓存里的帖子不代表调用方有权查看，可见性由调用方按当前用户判断
+ * 另有本实例内的帖子概要缓存(Caffeine，短TTL)，热榜等按id列表展示的场景批量取，未命中的一条IN查询补齐
+ * 指标：post.cache{result=hit|miss|negative}
+ */
+@Slf4j
+@Service
+public class PostCacheService {
+
+    private static final String KEY_PREFIX = "post:detail:";
+    // 空值标记，帖子不存在
+    private static final String NULL_VALUE = "";
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${community.post-cache.ttl-minutes:10}")
+    private long ttlMinutes;
+    // 不存在/不可见帖子的缓存秒数
+    @Value("${community.post-cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+    // 本地帖子概要缓存，计数等字段允许短时间不新
+    @Value("${community.post-cache.summary-ttl-seconds:30}")
+    private long summaryTtlSeconds;
+    @Value("${community.post-cache.summary-maximum-size:5000}")
+    private long summaryMaximumSize;
+
+    // 正在回源的帖子id -> 回源结果，同一id的并发未命中共用
+    private final Map<Long, CompletableFuture<Post>> loading = new ConcurrentHashMap<>();
+    private Cache<Long, PostSummaryVO> summaries;
+    private Counter hits;
+    private Counter misses;
+    private Counter negativeHits;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("post.cache").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("post.cache").tag("result", "miss").register(meterRegistry);
+        negativeHits = Counter.builder("post.cache").tag("result", "negative")
+                .description("命中空值或不可见标记的次数").register(meterRegistry);
+        summaries = Caffeine.newBuilder()
+                .maximumSize(summaryMaximumSize)
+                .expireAfterWrite(summaryTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取帖子
+     * 非已发布的帖子返回的只有id、userId、status，需要正文时调用方按权限用{@link #getFullById}再取
+     * @param postId 帖子id
+     * @return 帖子，不存在返回null
+     */
+    public Post getById(Long postId) {
+        String key = KEY_PREFIX + postId;
+        String json;
+        try {
+            json = stringRedisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            log.warn("Redis读取帖子{}失败，回源数据库：{}", postId, e.getMessage());
+            return postMapper.findById(postId);
+        }
+        if (json != null) {
+            if (NULL_VALUE.equals(json)) {
+                negativeHits.increment();
+                return null;
+            }
+            Post post = CacheJsonUtil.fromJson(json, Post.class);
+            if (post.getStatus() == PostStatus.PUBLISHED.getStatus()) {
+                hits.increment();
+            } else {
+                negativeHits.increment();
+            }
+            return post;
+        }
+        misses.increment();
+        return loadOnce(postId);
+    }
+
+    /**
+     * 批量获取帖子，语义同{@link #getById}
+     * @param postIds 帖子id
+     * @return 帖子id -> 帖子，不存在的id不在结果里
+     */
+    public Map<Long, Post> getByIds(Collection<Long> postIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
+        Map<Long, Post> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        List<String> values = null;
+        try {
+            values = stringRedisTemplate.opsForValue().multiGet(ids.stream().map(id -> KEY_PREFIX + id).toList());
+        } catch (Exception e) {
+            log.warn("Redis批量读取{}个帖子失败，回源数据库：{}", ids.size(), e.getMessage());
+        }
+        if (values == null) {
+            postMapper.findByIds(ids).forEach(post -> result.put(post.getId(), post));
+            return result;
+        }
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = values.get(i);
+            if (json == null) {
+                missing.add(ids.get(i));
+            } else if (NULL_VALUE.equals(json)) {
+                negativeHits.increment();
+            } else {
+                Post post = CacheJsonUtil.fromJson(json, Post.class);
+                if (post.getStatus() == PostStatus.PUBLISHED.getStatus()) {
+                    hits.increment();
+                } else {
+                    negativeHits.increment();
+                }
+                result.put(post.getId(), post);
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            Map<Long, Post> loaded = new HashMap<>();
+            postMapper.findByIds(missing).forEach(post -> loaded.put(post.getId(), post));
+            result.putAll(loaded);
+            writeRedis(missing, loaded);
+        }
+        return result;
+    }
+
+    /**
+     * 获取完整帖子，不可见标记命中时回源取正文，作者、管理员查看非公开帖子用
+     * @param post getById的结果
+     * @return 完整帖子，期间被删除返回null
+     */
+    public Post getFullById(Post post) {
+        if (post.getStatus() == PostStatus.PUBLISHED.getStatus() || post.getContent() != null) {
+            return post;
+        }
+        return postMapper.findById(post.getId());
+    }
+
+    /**
+     * 按id批量获取已发布帖子的概要
+     * 返回的是本地缓存对象的副本，调用方随后填作者信息等修改不会改到多个请求共用的缓存对象
+     * @param postIds 帖子id列表
+     * @return 帖子概要列表，顺序同postIds，不存在或未发布的跳过
+     */
+    public List<PostSummaryVO> getSummaries(List<Long> postIds) {
+        Map<Long, PostSummaryVO> found = new HashMap<>(summaries.getAllPresent(postIds));
+        List<Long> missing = postIds.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (PostSummaryVO summary : postMapper.findSummariesByIds(missing)) {
+                summaries.put(summary.getId(), summary);
+                found.put(summary.getId(), summary);
+            }
+        }
+        List<PostSummaryVO> result = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            PostSummaryVO summary = found.get(postId);
+            if (summary != null) {
+                PostSummaryVO copy = new PostSummaryVO();
+                BeanUtils.copyProperties(summary, copy);
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取完整帖子，语义同{@link #getFullById}
+     * @param posts getById/getByIds的结果
+     * @return 帖子id -> 完整帖子，期间被删除的不在结果里
+     */
+    public Map<Long, Post> getFullByIds(Collection<Post> posts) {
+        Map<Long, Post> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Post post : posts) {
+            if (post.getStatus() == PostStatus.PUBLISHED.getStatus() || post.getContent() != null) {
+                result.put(post.getId(), post);
+            } else {
+                missing.add(post.getId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            postMapper.findByIds(missing).forEach(post -> result.put(post.getId(), post));
+        }
+        return result;
+    }
+
+    /**
+     * 帖子修改、删除、状态变更后调用
+     * @param postId 帖子id
+     */
+    public void evict(Long postId) {
+        loading.remove(postId);     // 修改前开始的回源结果不再给后来者共用
+        summaries.invalidate(postId);
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + postId);
+        } catch (Exception e) {
+            log.warn("清除帖子{}的缓存失败，最多{}分钟后过期：{}", postId, ttlMinutes, e.getMessage());
+        }
+    }
+
+    private Post loadOnce(Long postId) {
+        CompletableFuture<Post> future = new CompletableFuture<>();
+        CompletableFuture<Post> existing = loading.putIfAbsent(postId, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+        try {
+            Post post = postMapper.findById(postId);
+            writeRedis(postId, post);
+            future.complete(post);
+            return post;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(postId, future);
+        }
+    }
+
+    private void writeRedis(Long postId, Post post) {
+        CacheEntry entry = toCacheEntry(post);
+        try {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + postId, entry.value(), entry.ttlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入帖子{}的缓存失败：{}", postId, e.getMessage());
+        }
+    }
+
+    // 批量写回，查不到的id写空值
+    private void writeRedis(List<Long> postIds, Map<Long, Post> posts) {
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Long postId : postIds) {
+                    CacheEntry entry = toCacheEntry(posts.get(postId));
+                    stringConnection.setEx(KEY_PREFIX + postId, entry.ttlSeconds(), entry.value());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("批量写入{}个帖子的缓存失败：{}", postIds.size(), e.getMessage());
+        }
+    }
+
+    private record CacheEntry(String value, long ttlSeconds) {
+    }
+
+    private CacheEntry toCacheEntry(Post post) {
+        String value;
+        long ttlSeconds;
+        if (post == null) {
+            value = NULL_VALUE;
+            ttlSeconds = negativeTtlSeconds;
+        } else if (post.getStatus() != PostStatus.PUBLISHED.getStatus()) {
+            // 不可见帖子只留判断权限要用的字段
+            Post marker = new Post();
+            marker.setId(post.getId());
+            marker.setUserId(post.getUserId());
+            marker.setStatus(post.getStatus());
+            value = CacheJsonUtil.toJson(marker);
+            ttlSeconds = negativeTtlSeconds;
+        } else {
+            value = CacheJsonUtil.toJson(post);
+            ttlSeconds = TimeUnit.MINUTES.toSeconds(ttlMinutes);
+        }
+        ttlSeconds += ThreadLocalRandom.current().nextLong(ttlSeconds / 5 + 1);
+        return new CacheEntry(value, ttlSeconds);
+    }
+}
@@ -0,0 +1,100 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.mapper.PostContentMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 帖子正文迁移：posts.content 搬到 post_contents
+ * 应用就绪后在后台按主键区间分批执行，每批一个短事务：复制正文、再清空posts里和复制过去一致的正文，
+ * 批与批之间停顿，不长时间锁行也不占满IO，可以在线跑；每批完成后把进度存进job_checkpoint，中断或重启从断点继续，
+ * 搬完后进度停在当时的最大id，之后启动只扫新增的一小段(新帖子本来就只写post_contents)
+ * 读正文用COALESCE(post_contents, posts)，新写入只写post_contents，修改正文时同时清空posts里的旧正文
+ * 必须等所有实例都升级到写post_contents的版本后再打开community.post-content.backfill-enabled：
+ * 滚动发布期间旧版本实例还在改posts.content，复制过去的是旧正文，读的时候又优先取post_contents，旧实例的修改读不到；
+ * 清空时只清两边一致的行，复制后又被改过的留在posts里并打日志，需要人工核对，不会丢内容
+ */
+@Slf4j
+@Service
+public class PostContentMigration {
+
+    private static final String CHECKPOINT_NAME = "post-content-backfill";
+
+    @Autowired
+    private PostContentMapper postContentMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 所有实例都升级后再打开，见类注释
+    @Value("${community.post-content.backfill-enabled:false}")
+    private boolean enabled;
+    // 每批的主键区间大小
+    @Value("${community.post-content.backfill-chunk-size:500}")
+    private int chunkSize;
+    // 每批之间停顿的毫秒数
+    @Value("${community.post-content.backfill-pause-ms:200}")
+    private long pauseMillis;
+
+    /**
+     * 应用就绪后在后台迁移，数据库暂不可用则每30秒重试，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            boolean done = false;
+            while (!done && event.getApplicationContext().isActive()) {
+                try {
+                    backfill();
+                    done = true;
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.warn("迁移帖子正文失败，30秒后重试：{}", e.getMessage());
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }, "post-content-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void backfill() throws InterruptedException {
+        Long checkpoint = postContentMapper.findCheckpoint(CHECKPOINT_NAME);
+        long start = checkpoint == null ? 0 : checkpoint;
+        long maxId = postContentMapper.findMaxPostId();
+        long copied = 0;
+        long conflicts = 0;
+        for (long fromId = start; fromId < maxId; fromId += chunkSize) {
+            long from = fromId;
+            long to = Math.min(fromId + chunkSize, maxId);
+            Integer rows = transactionTemplate.execute(status -> {
+                int n = postContentMapper.copyFromPosts(from, to);
+                postContentMapper.clearMigrated(from, to);
+                return n;
+            });
+            long unmigrated = postContentMapper.countUnmigrated(from, to);
+            if (unmigrated > 0) {
+                conflicts += unmigrated;
+                log.warn("id ({}, {}]内有{}个帖子的posts.content与post_contents不一致，未清空，请人工核对", from, to, unmigrated);
+            }
+            postContentMapper.saveCheckpoint(CHECKPOINT_NAME, to);
+            if (rows != null && rows > 0) {
+                copied += rows;
+                Thread.sleep(pauseMillis);
+            }
+        }
+        log.info("帖子正文迁移完成，本次从id {}扫描到{}，复制{}条，不一致{}条", start, maxId, copied, conflicts);
+    }
+}
@@ -0,0 +1,211 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.entity.PostCount;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.mapper.PostMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 帖子计数，代替分页时PageHelper对posts的COUNT(*)
+ * Redis一个hash里按 状态(s:状态)、分区+状态(c:分区id:状态)、作者+状态(u:作者id:状态) 记帖子数，
+ * 发帖、改状态、改分区、删帖时增减；定时按MySQL分组统计整体校准，纠正增减失败或并发造成的偏差
+ * 还没校准过(hash不存在)或Redis不可用时返回null，调用方回退到COUNT查询
+ */
+@Slf4j
+@Service
+public class PostCountService {
+
+    private static final String KEY = "post:counts";
+    // 校准完成标记，hash里没有它说明计数不可信
+    private static final String READY_FIELD = "ready";
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 新帖子写库后调用
+     * @param post 新帖子，需带userId、categoryId、status
+     */
+    public void onCreate(Post post) {
+        Map<String, Long> deltas = new HashMap<>();
+        addFields(deltas, post.getUserId(), post.getCategoryId(), post.getStatus(), 1);
+        apply(deltas);
+    }
+
+    /**
+     * 帖子状态变更后调用，包括软删除
+     * @param before 变更前的帖子
+     * @param newStatus 新状态
+     */
+    public void onStatusChange(Post before, int newStatus) {
+        if (before.getStatus() == newStatus) {
+            return;
+        }
+        Map<String, Long> deltas = new HashMap<>();
+        addFields(deltas, before.getUserId(), before.getCategoryId(), before.getStatus(), -1);
+        addFields(deltas, before.getUserId(), before.getCategoryId(), newStatus, 1);
+        apply(deltas);
+    }
+
+    /**
+     * 帖子换分区后调用
+     * @param before 变更前的帖子
+     * @param newCategoryId 新分区id
+     */
+    public void onCategoryChange(Post before, Long newCategoryId) {
+        if (newCategoryId == null || newCategoryId.equals(before.getCategoryId())) {
+            return;
+        }
+        Map<String, Long> deltas = new HashMap<>();
+        if (before.getCategoryId() != null) {
+            deltas.merge(categoryField(before.getCategoryId(), before.getStatus()), -1L, Long::sum);
+        }
+        deltas.merge(categoryField(newCategoryId, before.getStatus()), 1L, Long::sum);
+        apply(deltas);
+    }
+
+    /**
+     * 帖子物理删除后调用
+     * @param before 删除前的帖子
+     */
+    public void onDelete(Post before) {
+        Map<String, Long> deltas = new HashMap<>();
+        addFields(deltas, before.getUserId(), before.getCategoryId(), before.getStatus(), -1);
+        apply(deltas);
+    }
+
+    /**
+     * 已发布帖子总数
+     * @return 帖子数，计数不可用返回null
+     */
+    public Long countPublished() {
+        return sum(List.of(statusField(PostStatus.PUBLISHED.getStatus())));
+    }
+
+    /**
+     * 某作者的帖子数，可见范围同PostMapper.findPostsByUserId
+     * @param userId 作者id
+     * @param isAdmin 管理员看所有状态
+     * @param isAuthor 作者本人看除已删除外的状态
+     * @return 帖子数，计数不可用返回null
+     */
+    public Long countByUser(Long userId, boolean isAdmin, boolean isAuthor) {
+        List<String> fields = new ArrayList<>();
+        for (PostStatus status : PostStatus.values()) {
+            boolean visible = isAuthor ? status != PostStatus.DELETED
+                    : isAdmin || status == PostStatus.PUBLISHED;
+            if (visible) {
+                fields.add(userField(userId, status.getStatus()));
+            }
+        }
+        return sum(fields);
+    }
+
+    /**
+     * 分区下已发布帖子数
+     * @param categoryId 分区id
+     * @return 帖子数，计数不可用返回null
+     */
+    public Long countPublishedByCategory(Long categoryId) {
+        return sum(List.of(categoryField(categoryId, PostStatus.PUBLISHED.getStatus())));
+    }
+
+    /**
+     * 按MySQL分组统计重建计数，先写临时hash再RENAME整体替换
+     * 统计期间发生的增减可能被覆盖掉，偏差留到下次校准
+     */
+    @Scheduled(fixedDelayString = "${community.post-count.reconcile-interval-ms:3600000}", initialDelay = 10_000)
+    public void reconcile() {
+        try {
+            Map<String, Long> counts = new HashMap<>();
+            for (PostCount row : postMapper.countGroupByUserCategoryStatus()) {
+                addFields(counts, row.getUserId(), row.getCategoryId(), row.getStatus(), row.getTotal());
+            }
+            Map<String, String> values = new HashMap<>();
+            counts.forEach((field, count) -> values.put(field, count.toString()));
+            values.put(READY_FIELD, "1");
+            String tmpKey = KEY + ":tmp:" + UUID.randomUUID();
+            stringRedisTemplate.opsForHash().putAll(tmpKey, values);
+            stringRedisTemplate.rename(tmpKey, KEY);
+            log.info("帖子计数已校准，共{}项", counts.size());
+        } catch (Exception e) {
+            log.warn("校准帖子计数失败：{}", e.getMessage());
+        }
+    }
+
+    private Long sum(List<String> fields) {
+        List<Object> keys = new ArrayList<>(fields.size() + 1);
+        keys.add(READY_FIELD);
+        keys.addAll(fields);
+        try {
+            List<Object> values = stringRedisTemplate.opsForHash().multiGet(KEY, keys);
+            if (values.get(0) == null) {
+                return null;
+            }
+            long total = 0;
+            for (Object value : values.subList(1, values.size())) {
+                if (value != null) {
+                    total += Long.parseLong(value.toString());
+                }
+            }
+            return Math.max(total, 0);
+        } catch (Exception e) {
+            log.warn("读取帖子计数失败，回退COUNT查询：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void apply(Map<String, Long> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                deltas.forEach((field, delta) -> stringConnection.hIncrBy(KEY, field, delta));
+                return null;
+            });
+        } catch (Exception e) {
+            // 下次校准时纠正
+            log.warn("更新帖子计数失败：{}", e.getMessage());
+        }
+    }
+
+    private static void addFields(Map<String, Long> deltas, Long userId, Long categoryId, int status, long delta) {
+        deltas.merge(statusField(status), delta, Long::sum);
+        if (categoryId != null) {
+            deltas.merge(categoryField(categoryId, status), delta, Long::sum);
+        }
+        if (userId != null) {
+            deltas.merge(userField(userId, status), delta, Long::sum);
+        }
+    }
+
+    private static String statusField(int status) {
+        return "s:" + status;
+    }
+
+    private static String categoryField(Long categoryId, int status) {
+        return "c:" + categoryId + ":" + status;
+    }
+
+    private static String userField(Long userId, int status) {
+        return "u:" + userId + ":" + status;
+    }
+}
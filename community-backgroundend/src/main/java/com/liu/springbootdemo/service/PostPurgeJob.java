@@ -0,0 +1,255 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.common.enums.FileType;
+import com.liu.springbootdemo.mapper.PostPurgeMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 物理删除软删除超过保留期的帖子
+ * 按主键正序一批批处理：先认领这批帖子(记下purge_time，之后不能再恢复)，只对认领到的帖子
+ * 删评论收到的点赞、评论、帖子的点赞和收藏、修订历史，再删MinIO里的封面和正文图片，最后删帖子(只剩每帖一行的正文由外键级联)
+ * 每条DELETE带LIMIT，删完一块按rows-per-second预算停顿，不长时间锁大范围的行，也不把主从延迟拉大
+ * 每批处理完把最后一个id存进job_checkpoint，中途停机下次从断点继续，已删过的部分重做也没影响；扫完一遍检查点归零
+ * 试运行只统计、打日志，不删任何东西，也不动检查点
+ * 在单独的线程里跑，不占定时任务线程；多实例时只有拿到锁的实例执行，每批后比对令牌续期，锁丢了就停下
+ */
+@Slf4j
+@Service
+public class PostPurgeJob {
+
+    private static final String CHECKPOINT_NAME = "post-purge";
+    private static final String LOCK_KEY = "post:purge:lock";
+    // 只删帖子封面和正文图片目录下的对象，头像等其他目录不碰
+    private static final Pattern IMAGE_OBJECT = Pattern.compile(
+            "(?:" + FileType.POST_COVER.getFolder() + "|" + FileType.POST_IMAGE.getFolder() + ")"
+                    + "/\\d{4}/\\d{2}/\\d{2}/[0-9a-fA-F-]{36}\\.[A-Za-z0-9]+");
+
+    @Autowired
+    private PostPurgeMapper postPurgeMapper;
+    @Autowired
+    private PostCountService postCountService;
+    @Autowired
+    private PostCacheService postCacheService;
+    @Autowired
+    private MinioService minioService;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisScript<Long> releaseLockScript;
+    @Autowired
+    private RedisScript<Long> renewLockScript;
+
+    @Value("${community.post-purge.enabled:true}")
+    private boolean enabled;
+    // 试运行：只统计不删除
+    @Value("${community.post-purge.dry-run:true}")
+    private boolean dryRun;
+    // 软删除后保留的天数
+    @Value("${community.post-purge.retention-days:180}")
+    private long retentionDays;
+    // 每批处理的帖子数
+    @Value("${community.post-purge.batch-size:50}")
+    private int batchSize;
+    // 每条DELETE最多删除的行数
+    @Value("${community.post-purge.delete-chunk-size:500}")
+    private int deleteChunkSize;
+    // 每秒最多删除的行数
+    @Value("${community.post-purge.rows-per-second:1000}")
+    private int rowsPerSecond;
+    // 两条DELETE之间至少停顿的毫秒数
+    @Value("${community.post-purge.pause-ms:100}")
+    private long pauseMillis;
+    @Value("${community.post-purge.lock-seconds:600}")
+    private long lockSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 定时启动清理，上一次还没跑完就跳过
+     */
+    @Scheduled(cron = "${community.post-purge.cron:0 0 3 * * *}")
+    public void schedule() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                runWithLock();
+            } finally {
+                running.set(false);
+            }
+        }, "post-purge");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void runWithLock() {
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, lockToken, lockSeconds, TimeUnit.SECONDS);
+            if (!Boolean.TRUE.equals(locked)) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("获取帖子清理锁失败，本次跳过：{}", e.getMessage());
+            return;
+        }
+        try {
+            purge(lockToken);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("清理已删除帖子中断，下次从检查点继续：{}", e.getMessage());
+        } finally {
+            releaseLock(lockToken);
+        }
+    }
+
+    private void purge(String lockToken) throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Long checkpoint = dryRun ? null : postPurgeMapper.findCheckpoint(CHECKPOINT_NAME);
+        long cursor = checkpoint == null ? 0 : checkpoint;
+        long postCount = 0;
+        long rowCount = 0;
+        int imageCount = 0;
+        List<Post> batch;
+        do {
+            batch = postPurgeMapper.findExpired(cursor, cutoff, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> postIds = batch.stream().map(Post::getId).toList();
+            if (dryRun) {
+                long comments = postPurgeMapper.countComments(postIds);
+                int images = collectImages(batch).size();
+                log.info("[试运行] 将物理删除帖子{}，评论{}条，图片{}个", postIds, comments, images);
+                rowCount += comments;
+                postCount += batch.size();
+                imageCount += images;
+            } else {
+                // 先认领再删关联数据：查出来之后被恢复的帖子认领不到，它的评论和图片不会被删
+                postPurgeMapper.claimForPurge(postIds, cutoff);
+                Set<Long> claimed = new HashSet<>(postPurgeMapper.findClaimed(postIds));
+                List<Post> purging = batch.stream().filter(post -> claimed.contains(post.getId())).toList();
+                if (!purging.isEmpty()) {
+                    List<Long> purgeIds = purging.stream().map(Post::getId).toList();
+                    Set<String> images = collectImages(purging);
+                    rowCount += deleteInChunks(limit -> postPurgeMapper.deleteCommentLikes(purgeIds, limit));
+                    rowCount += deleteInChunks(limit -> postPurgeMapper.deleteComments(purgeIds, limit));
+                    rowCount += deleteInChunks(limit -> postPurgeMapper.deletePostLikes(purgeIds, limit));
+                    rowCount += deleteInChunks(limit -> postPurgeMapper.deleteCollects(purgeIds, limit));
+                    rowCount += deleteInChunks(limit -> postPurgeMapper.deleteRevisions(purgeIds, limit));
+                    removeImages(images);   // 先删图片再删帖子，中途停机重做时还能找到图片
+                    int deleted = postPurgeMapper.deletePosts(purgeIds);
+                    rowCount += deleted;
+                    for (Post post : purging) {
+                        postCountService.onDelete(post);
+                        postCacheService.evict(post.getId());
+                    }
+                    throttle(deleted);
+                    postCount += purging.size();
+                    imageCount += images.size();
+                }
+            }
+            cursor = postIds.get(postIds.size() - 1);
+            if (!dryRun) {
+                postPurgeMapper.saveCheckpoint(CHECKPOINT_NAME, cursor);
+            }
+            renewLock(lockToken);
+        } while (batch.size() == batchSize);
+
+        if (!dryRun) {
+            postPurgeMapper.saveCheckpoint(CHECKPOINT_NAME, 0);  // 扫完一遍，下次从头开始
+        }
+        log.info("{}清理删除超过{}天的帖子完成：帖子{}个，评论等关联数据{}行，图片{}个",
+                dryRun ? "[试运行] " : "", retentionDays, postCount, rowCount, imageCount);
+    }
+
+    /**
+     * 反复执行带LIMIT的DELETE直到删完，每块之后按预算停顿
+     * @param delete 参数为本次最多删除的行数，返回实际删除的行数
+     * @return 删除的总行数
+     */
+    private long deleteInChunks(IntUnaryOperator delete) throws InterruptedException {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = delete.applyAsInt(deleteChunkSize);
+            total += deleted;
+            throttle(deleted);
+        } while (deleted >= deleteChunkSize);
+        return total;
+    }
+
+    // 删了rows行之后停顿，保证每秒不超过rows-per-second行
+    private void throttle(int rows) throws InterruptedException {
+        if (rows <= 0) {
+            return;
+        }
+        Thread.sleep(Math.max(pauseMillis, rows * 1000L / rowsPerSecond));
+    }
+
+    private static Set<String> collectImages(List<Post> posts) {
+        Set<String> objects = new LinkedHashSet<>();
+        for (Post post : posts) {
+            for (String text : new String[]{post.getCoverImage(), post.getContent()}) {
+                if (text == null) {
+                    continue;
+                }
+                Matcher matcher = IMAGE_OBJECT.matcher(text);
+                while (matcher.find()) {
+                    objects.add(matcher.group());
+                }
+            }
+        }
+        return objects;
+    }
+
+    private void removeImages(Set<String> objects) {
+        for (String object : objects) {
+            try {
+                minioService.deleteFile(object);
+            } catch (Exception e) {
+                // 只留下孤儿文件，不影响删帖
+                log.warn("删除图片{}失败：{}", object, e.getMessage());
+            }
+        }
+    }
+
+    // 锁还是自己的才续期；已过期被别的实例拿到时停下，由它从检查点继续
+    private void renewLock(String lockToken) {
+        Long renewed = stringRedisTemplate.execute(renewLockScript, List.of(LOCK_KEY),
+                lockToken, String.valueOf(lockSeconds));
+        if (!Long.valueOf(1).equals(renewed)) {
+            throw new IllegalStateException("帖子清理锁已失效");
+        }
+    }
+
+    private void releaseLock(String lockToken) {
+        try {
+            stringRedisTemplate.execute(releaseLockScript, List.of(LOCK_KEY), lockToken);
+        } catch (Exception e) {
+            log.warn("释放帖子清理锁失败，{}秒后自动过期：{}", lockSeconds, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.PostRevision;
+import com.liu.springbootdemo.POJO.vo.PostRevisionVO;
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.utils.TextDelta;
+import com.liu.springbootdemo.mapper.PostRevisionMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帖子修订历史
+ * 修改帖子提交后异步追加一个版本，不拖慢修改接口；单线程写，本实例内同一帖子的版本号不会冲突，多实例冲突时重试
+ * 正文每snapshot-interval版存一次全文，其余存相对上一版的差量，差量比全文一半还大时也存全文；
+ * 还原任意版本最多读snapshot-interval行，从最近的全文版本依次应用差量
+ * 追加前先还原最新版本和修改前的内容比对，不一致(首次修改，或有绕过修改接口的改动)先把修改前的内容补记成一个版本
+ * 应用宕机时队列里还没写的版本会丢，下次修改时按上面的比对补记修改前的内容，只少一个中间版本的修改人
+ */
+@Slf4j
+@Service
+public class PostRevisionService {
+
+    @Autowired
+    private PostRevisionMapper postRevisionMapper;
+
+    // 每隔多少版存一次全文
+    @Value("${community.post-revision.snapshot-interval:10}")
+    private int snapshotInterval;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(10_000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "post-revision");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次修改，在事务里调用时等提交后再写，回滚了就不记
+     * @param postId 帖子id
+     * @param editorId 修改人
+     * @param oldTitle 修改前的标题
+     * @param oldContent 修改前的正文
+     * @param oldTime 修改前的修改时间，补记修改前的版本时用
+     * @param newTitle 修改后的标题
+     * @param newContent 修改后的正文
+     */
+    public void record(Long postId, Long editorId, String oldTitle, String oldContent, LocalDateTime oldTime,
+                       String newTitle, String newContent) {
+        if (Objects.equals(oldTitle, newTitle) && Objects.equals(oldContent, newContent)) {
+            return;
+        }
+        Runnable task = () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    append(postId, editorId, oldTitle, nullToEmpty(oldContent), oldTime, newTitle, nullToEmpty(newContent));
+                    return;
+                } catch (DuplicateKeyException e) {
+                    if (attempt >= 3) {
+                        log.warn("帖子{}的修订版本号冲突，放弃记录本次修改", postId);
+                        return;
+                    }
+                } catch (Exception e) {
+                    log.warn("记录帖子{}的修订失败：{}", postId, e.getMessage());
+                    return;
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(postId, task);
+                }
+            });
+        } else {
+            submit(postId, task);
+        }
+    }
+
+    /**
+     * 帖子的版本列表，不带正文，新版本在前
+     * @param postId 帖子id
+     */
+    public List<PostRevisionVO> listRevisions(Long postId) {
+        List<PostRevisionVO> result = new ArrayList<>();
+        for (PostRevision revision : postRevisionMapper.findByPostId(postId)) {
+            result.add(toVO(revision, null));
+        }
+        return result;
+    }
+
+    /**
+     * 还原某个版本的标题和正文
+     * @param postId 帖子id
+     * @param version 版本号
+     */
+    public PostRevisionVO getRevision(Long postId, int version) {
+        List<PostRevision> chain = postRevisionMapper.findChain(postId, version);
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getVersion() != version) {
+            throw new BusinessException(ErrorCode.POST_NOT_FOUND, "帖子" + postId + "没有版本" + version);
+        }
+        return toVO(chain.get(chain.size() - 1), materialize(chain));
+    }
+
+    private void submit(Long postId, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("修订队列已满，帖子{}本次修改不记录，下次修改时补记", postId);
+        }
+    }
+
+    private void append(Long postId, Long editorId, String oldTitle, String oldContent, LocalDateTime oldTime,
+                        String newTitle, String newContent) {
+        List<PostRevision> chain = postRevisionMapper.findChain(postId, Integer.MAX_VALUE);
+        PostRevision head = chain.isEmpty() ? null : chain.get(chain.size() - 1);
+        String headContent = chain.isEmpty() ? null : materialize(chain);
+        int snapshotVersion = chain.isEmpty() ? 0 : chain.get(0).getVersion();
+
+        if (head == null || !Objects.equals(head.getTitle(), oldTitle) || !oldContent.equals(headContent)) {
+            head = insert(postId, null, oldTitle, oldContent, headContent, head, snapshotVersion, oldTime);
+            if (head.isSnapshot()) {
+                snapshotVersion = head.getVersion();
+            }
+        }
+        insert(postId, editorId, newTitle, newContent, oldContent, head, snapshotVersion,
+                LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private PostRevision insert(Long postId, Long editorId, String title, String content, String previousContent,
+                                PostRevision previous, int snapshotVersion, LocalDateTime time) {
+        PostRevision revision = new PostRevision();
+        revision.setPostId(postId);
+        revision.setVersion(previous == null ? 1 : previous.getVersion() + 1);
+        revision.setEditorId(editorId);
+        revision.setTitle(title);
+        revision.setCreateTime(time);
+        String delta = previousContent == null || revision.getVersion() - snapshotVersion >= snapshotInterval
+                ? null : TextDelta.diff(previousContent, content);
+        if (delta == null || delta.length() * 2 > content.length()) {
+            revision.setSnapshot(true);
+            revision.setPayload(content);
+        } else {
+            revision.setSnapshot(false);
+            revision.setPayload(delta);
+        }
+        postRevisionMapper.insert(revision);
+        return revision;
+    }
+
+    // chain以全文版本开头，按版本号正序
+    private static String materialize(List<PostRevision> chain) {
+        String content = null;
+        for (PostRevision revision : chain) {
+            content = revision.isSnapshot() ? revision.getPayload() : TextDelta.apply(content, revision.getPayload());
+        }
+        return content;
+    }
+
+    private static PostRevisionVO toVO(PostRevision revision, String content) {
+        PostRevisionVO vo = new PostRevisionVO();
+        vo.setPostId(revision.getPostId());
+        vo.setVersion(revision.getVersion());
+        vo.setEditorId(revision.getEditorId());
+        vo.setTitle(revision.getTitle());
+        vo.setContent(content);
+        vo.setCreateTime(revision.getCreateTime());
+        return vo;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,633 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.Result.CursorPageResult;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.vo.PostSearchVO;
+import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.utils.CursorUtil;
+import com.liu.springbootdemo.mapper.PostMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cn.smart.SmartChineseAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 帖子全文搜索，进程内Lucene索引，只收录已发布的帖子
+ * 标题、简介、正文、分区名用SmartCN中文分词，标题和简介加权；分区id可过滤；按相关度倒序、同分按id倒序，游标翻页
+ * 增量：帖子发布、修改、删除、改状态提交后调用onChanged，通过Redis发布订阅通知所有实例(每个实例各有一份索引)，
+ * 各实例在单线程里按id从库里读最新状态，已发布的更新文档，否则删掉；Redis不可用时只更新本实例
+ * 近实时：写入后每refresh-interval-ms重新打开读视图，不用等commit；每commit-interval-ms落盘一次
+ * 全量重建：一个线程从MySQL流式读已发布帖子，多个线程并行建文档写入，写完删掉本轮没扫到的旧文档；
+ * 启动时索引为空自动重建，管理员也可手动触发(广播到所有实例)
+ * 追赶：commit里记着已追到的数据库时间，启动时和每catch-up-interval-ms从这里往前catch-up-overlap-ms起，
+ * 按posts.change_time重放变更过的帖子，停机期间没收到的广播、宕机前没落盘的增量都能补回来；
+ * 管理员物理删除的帖子没有行可重放，只靠增量，残留的文档查出后会被下面的概要缓存过滤掉
+ * 重建和追赶期间增量更新过的帖子不再写流里读到的(可能更旧的)快照，读完后按库里最新状态再更新一次
+ * 索引里可能短暂残留已下线的帖子，查出的id再走帖子概要缓存，只返回仍是已发布的
+ */
+@Slf4j
+@Service
+public class PostSearchService implements MessageListener {
+
+    // 变更广播频道，消息为帖子id，REINDEX_ALL表示全量重建
+    private static final String CHANNEL = "post:search:changed";
+    private static final String REINDEX_ALL = "*";
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_ID_SORT = "id_sort";
+    private static final String FIELD_CATEGORY_ID = "category_id";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_SUMMARY = "summary";
+    private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_CATEGORY_NAME = "category_name";
+    // 写入该文档的重建轮次，重建完删掉更早轮次的文档
+    private static final String FIELD_GENERATION = "generation";
+    // commit里记的已追到的数据库时间，这之前的变更都已在索引里
+    private static final String COMMIT_CHANGE_TIME = "change_time";
+
+    private static final Map<String, Float> BOOSTS = Map.of(
+            FIELD_TITLE, 3f, FIELD_SUMMARY, 2f, FIELD_CATEGORY_NAME, 1.5f, FIELD_CONTENT, 1f);
+    private static final Sort SORT = new Sort(SortField.FIELD_SCORE, new SortField(FIELD_ID_SORT, SortField.Type.LONG, true));
+    // 重建时通知写入线程结束
+    private static final Post END = new Post();
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private PostCacheService postCacheService;
+    @Autowired
+    private UserSummaryLoader userSummaryLoader;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${community.search.index-dir:./data/post-index}")
+    private String indexDir;
+    // 全量重建时并行写入的线程数
+    @Value("${community.search.reindex-threads:4}")
+    private int reindexThreads;
+    // 正文高亮片段的字数
+    @Value("${community.search.fragment-size:100}")
+    private int fragmentSize;
+    // 追赶时从记下的时间再往前重放的毫秒数，覆盖记下change_time之后过了一会儿才提交的事务
+    @Value("${community.search.catch-up-overlap-ms:300000}")
+    private long catchUpOverlapMillis;
+
+    private final Analyzer analyzer = new SmartChineseAnalyzer();
+    // 全量重建和追赶同一时刻只跑一个
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ExecutorService updater;
+    private volatile long generation;
+    // 已追到的数据库时间，为null时没法追赶，要全量重建
+    private volatile LocalDateTime caughtUpTo;
+    // 本轮重建或追赶期间增量更新过的帖子，不在重建或追赶时为null
+    private volatile Set<Long> touched;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        updater = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(10_000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "post-search-update");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            directory = FSDirectory.open(Path.of(indexDir));
+            if (DirectoryReader.indexExists(directory)) {
+                String mark = SegmentInfos.readLatestCommit(directory).getUserData().get(COMMIT_CHANGE_TIME);
+                caughtUpTo = mark == null ? null : LocalDateTime.parse(mark);
+            }
+            writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+            searcherManager = new SearcherManager(writer, null);
+            generation = System.currentTimeMillis();
+        } catch (IOException e) {
+            // 比如同一目录已被另一个进程占用，不影响其他功能启动
+            log.warn("打开搜索索引{}失败，搜索不可用：{}", indexDir, e.getMessage());
+            writer = null;
+            searcherManager = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        updater.shutdown();
+        updater.awaitTermination(10, TimeUnit.SECONDS);
+        if (writer != null) {
+            searcherManager.close();
+            writer.close();     // 关闭时commit
+            directory.close();
+        }
+    }
+
+    /**
+     * 启动时在后台补上停机期间的变更，数据库暂不可用则每30秒重试
+     * 索引为空(首次部署或索引目录丢了)或没记追到的时间(旧版本建的索引)时全量重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup(ApplicationReadyEvent event) {
+        if (writer == null) {
+            return;
+        }
+        if (writer.getDocStats().numDocs == 0 || caughtUpTo == null) {
+            runInBackground(this::reindex, event);
+        } else {
+            runInBackground(this::catchUp, event);
+        }
+    }
+
+    /**
+     * 定时追赶，补上广播丢失(Redis抖动、更新队列满)漏掉的变更
+     */
+    @Scheduled(initialDelayString = "${community.search.catch-up-interval-ms:600000}",
+            fixedDelayString = "${community.search.catch-up-interval-ms:600000}")
+    public void scheduledCatchUp() {
+        if (writer == null || caughtUpTo == null) {
+            return;     // 还没重建完
+        }
+        runInBackground(this::catchUp, null);
+    }
+
+    /**
+     * 帖子发布、修改、删除、改状态后调用，在事务里调用时等提交后再通知
+     * @param postId 帖子id
+     */
+    public void onChanged(Long postId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(postId.toString());
+                }
+            });
+        } else {
+            broadcast(postId.toString());
+        }
+    }
+
+    /**
+     * 所有实例全量重建索引，管理员调用
+     */
+    public void reindexAll() {
+        broadcast(REINDEX_ALL);
+    }
+
+    /**
+     * 收到其他实例(也包括自己)的变更广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handle(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 搜索已发布的帖子
+     * @param keyword 关键词，按中文分词后每个词都要命中(标题、简介、正文、分区名任一处)
+     * @param categoryIds 只搜这些分区，为空不限
+     * @param cursor 上一页返回的nextCursor，第一页为null
+     * @param size 条数，最多100
+     * @return 搜索结果和下一页游标
+     */
+    public CursorPageResult<PostSearchVO> search(String keyword, List<Long> categoryIds, String cursor, int size) {
+        if (searcherManager == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_BUSY, "搜索暂不可用");
+        }
+        size = Math.min(size, 100);
+        CursorUtil.SearchCursor after = CursorUtil.decodeSearch(cursor);
+        Query textQuery = parse(keyword);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().add(textQuery, BooleanClause.Occur.MUST);
+        if (categoryIds != null && !categoryIds.isEmpty()) {
+            long[] ids = categoryIds.stream().mapToLong(Long::longValue).toArray();
+            builder.add(LongPoint.newSetQuery(FIELD_CATEGORY_ID, ids), BooleanClause.Occur.FILTER);
+        }
+        Query query = builder.build();
+
+        IndexSearcher searcher;
+        try {
+            searcher = searcherManager.acquire();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_RESOURCE_ERROR, "读取搜索索引失败");
+        }
+        try {
+            // 多查一条判断是否还有下一页；FieldDoc的doc只在相关度和id都相同(即上一页最后一条本身)时比较，取最大值把它排除
+            TopFieldDocs top = after == null
+                    ? searcher.search(query, size + 1, SORT, true)
+                    : searcher.searchAfter(new FieldDoc(searcher.getIndexReader().maxDoc() - 1, after.score(),
+                    new Object[]{after.score(), after.id()}), query, size + 1, SORT, true);
+            boolean hasMore = top.scoreDocs.length > size;
+            int count = Math.min(top.scoreDocs.length, size);
+
+            Highlighter highlighter = highlighter(textQuery);
+            StoredFields storedFields = searcher.storedFields();
+            List<Long> postIds = new ArrayList<>(count);
+            Map<Long, PostSearchVO> hits = new HashMap<>();
+            String nextCursor = null;
+            for (int i = 0; i < count; i++) {
+                ScoreDoc scoreDoc = top.scoreDocs[i];
+                Document document = storedFields.document(scoreDoc.doc);
+                Long postId = Long.valueOf(document.get(FIELD_ID));
+                PostSearchVO hit = new PostSearchVO();
+                hit.setTitleHighlight(highlight(highlighter, FIELD_TITLE, document.get(FIELD_TITLE), true));
+                hit.setContentHighlight(highlight(highlighter, FIELD_CONTENT, document.get(FIELD_CONTENT), false));
+                postIds.add(postId);
+                hits.put(postId, hit);
+                nextCursor = CursorUtil.encodeSearch(scoreDoc.score, postId);
+            }
+
+            List<PostSearchVO> results = new ArrayList<>(count);
+            for (PostSummaryVO summary : userSummaryLoader.fillAuthors(postCacheService.getSummaries(postIds))) {
+                PostSearchVO hit = hits.get(summary.getId());
+                hit.setPost(summary);
+                results.add(hit);
+            }
+            return new CursorPageResult<>(results, hasMore ? nextCursor : null, hasMore);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_RESOURCE_ERROR, "读取搜索索引失败");
+        } finally {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                log.warn("释放搜索读视图失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 近实时：重新打开读视图，之前写入的文档就能搜到
+     */
+    @Scheduled(fixedDelayString = "${community.search.refresh-interval-ms:1000}")
+    public void refresh() {
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("刷新搜索读视图失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定时落盘，宕机丢掉的这段时间的增量由下次启动的追赶补回
+     */
+    @Scheduled(fixedDelayString = "${community.search.commit-interval-ms:30000}")
+    public void commit() {
+        if (writer == null || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            log.warn("搜索索引落盘失败：{}", e.getMessage());
+        }
+    }
+
+    private void broadcast(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            // 其他实例只能等下次重建
+            log.warn("广播搜索索引变更失败，只更新本实例：{}", e.getMessage());
+            handle(message);
+        }
+    }
+
+    private void handle(String message) {
+        if (writer == null) {
+            return;
+        }
+        if (REINDEX_ALL.equals(message)) {
+            runInBackground(this::reindex, null);
+            return;
+        }
+        enqueue(Long.valueOf(message));
+    }
+
+    // 在更新线程里按库里最新状态更新一个帖子的文档
+    private void enqueue(Long postId) {
+        try {
+            updater.execute(() -> {
+                Set<Long> round = touched;
+                if (round != null) {
+                    round.add(postId);     // 先记下再读库，重建和追赶不会再拿更旧的快照覆盖
+                }
+                try {
+                    Post post = postMapper.findById(postId);
+                    if (post == null) {
+                        writer.deleteDocuments(new Term(FIELD_ID, postId.toString()));
+                    } else {
+                        index(post, generation);
+                    }
+                } catch (Exception e) {
+                    log.warn("更新帖子{}的搜索索引失败：{}", postId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("搜索索引更新队列已满，帖子{}本次变更未更新，等下次追赶", postId);
+        }
+    }
+
+    // 已发布的更新文档，否则删掉
+    private void index(Post post, long generation) throws IOException {
+        Term id = new Term(FIELD_ID, post.getId().toString());
+        if (post.getStatus() == PostStatus.PUBLISHED.getStatus()) {
+            writer.updateDocument(id, toDocument(post, generation));
+        } else {
+            writer.deleteDocuments(id);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * 在后台全量重建或追赶，同一时刻只跑一个，正在跑时跳过
+     * @param startup 启动时触发的传入就绪事件，失败后重试直到应用关闭；手动和定时触发的为null，失败不重试
+     */
+    private void runInBackground(IndexTask task, ApplicationReadyEvent startup) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                while (true) {
+                    try {
+                        task.run();
+                        return;
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        if (startup == null || !startup.getApplicationContext().isActive()) {
+                            log.warn("重建或追赶搜索索引失败：{}", e.getMessage());
+                            return;
+                        }
+                        log.warn("重建或追赶搜索索引失败，30秒后重试：{}", e.getMessage());
+                        Thread.sleep(30_000);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                // 应用关闭
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "post-search-reindex");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void reindex() throws Exception {
+        long start = System.currentTimeMillis();
+        long round = start;
+        LocalDateTime upper = postMapper.currentTime();    // 开始流式读之前的变更都会读到
+        generation = round;     // 重建期间的增量更新也记为本轮，重建完不会被删
+        Set<Long> updated = ConcurrentHashMap.newKeySet();
+        touched = updated;
+        BlockingQueue<Post> queue = new ArrayBlockingQueue<>(1000);
+        AtomicLong indexed = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(reindexThreads, runnable -> {
+            Thread thread = new Thread(runnable, "post-search-reindex-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < reindexThreads; i++) {
+            workers.execute(() -> {
+                try {
+                    for (Post post = queue.take(); post != END; post = queue.take()) {
+                        if (updated.contains(post.getId())) {
+                            continue;   // 增量已按更新的状态写过，流里的快照可能是旧的
+                        }
+                        try {
+                            writer.updateDocument(new Term(FIELD_ID, post.getId().toString()), toDocument(post, round));
+                            indexed.incrementAndGet();
+                        } catch (Exception e) {
+                            log.warn("重建时写入帖子{}失败：{}", post.getId(), e.getMessage());
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                    // 重建被中断
+                }
+            });
+        }
+        try {
+            // 流式结果集要在同一个连接上读完
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<Post> posts = postMapper.streamPublished()) {
+                    for (Post post : posts) {
+                        queue.put(post);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("重建被中断");
+                }
+            });
+        } finally {
+            for (int i = 0; i < reindexThreads; i++) {
+                queue.put(END);
+            }
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.MINUTES);
+            touched = null;
+        }
+        // 本轮没扫到的是已下线的帖子
+        writer.deleteDocuments(LongPoint.newRangeQuery(FIELD_GENERATION, Long.MIN_VALUE, round - 1));
+        replay(updated);
+        markCaughtUp(upper);
+        log.info("搜索索引重建完成，{}个帖子，期间增量更新{}个，耗时{}毫秒",
+                indexed.get(), updated.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 从已追到的时间往前catch-up-overlap-ms起，重放change_time在这之后的帖子
+     */
+    private void catchUp() {
+        long start = System.currentTimeMillis();
+        LocalDateTime since = caughtUpTo.minus(Duration.ofMillis(catchUpOverlapMillis));
+        LocalDateTime upper = postMapper.currentTime();
+        Set<Long> updated = ConcurrentHashMap.newKeySet();
+        AtomicLong replayed = new AtomicLong();
+        touched = updated;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<Post> posts = postMapper.streamChangedSince(since)) {
+                    for (Post post : posts) {
+                        if (!updated.contains(post.getId())) {
+                            index(post, generation);
+                            replayed.incrementAndGet();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            touched = null;
+        }
+        replay(updated);
+        markCaughtUp(upper);
+        log.info("搜索索引追赶完成，从{}起重放{}个帖子，期间增量更新{}个，耗时{}毫秒",
+                since, replayed.get(), updated.size(), System.currentTimeMillis() - start);
+    }
+
+    // 重建或追赶期间增量更新过的帖子，检查和写入之间可能又被快照覆盖，按库里最新状态再更新一次
+    private void replay(Set<Long> postIds) {
+        postIds.forEach(this::enqueue);
+    }
+
+    // 记下已追到的时间，随这次及以后的commit落盘
+    private void markCaughtUp(LocalDateTime upper) {
+        writer.setLiveCommitData(Map.of(COMMIT_CHANGE_TIME, upper.toString()).entrySet());
+        caughtUpTo = upper;
+        try {
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new IllegalStateException("搜索索引落盘失败", e);
+        }
+    }
+
+    private static Document toDocument(Post post, long generation) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, post.getId().toString(), Field.Store.YES));
+        document.add(new NumericDocValuesField(FIELD_ID_SORT, post.getId()));
+        if (post.getCategoryId() != null) {
+            document.add(new LongPoint(FIELD_CATEGORY_ID, post.getCategoryId()));
+        }
+        document.add(new TextField(FIELD_TITLE, nullToEmpty(post.getTitle()), Field.Store.YES));
+        document.add(new TextField(FIELD_SUMMARY, nullToEmpty(post.getSummary()), Field.Store.NO));
+        document.add(new TextField(FIELD_CONTENT, nullToEmpty(post.getContent()), Field.Store.YES));   // 存原文用于高亮
+        document.add(new TextField(FIELD_CATEGORY_NAME, nullToEmpty(post.getCategoryName()), Field.Store.NO));
+        document.add(new LongPoint(FIELD_GENERATION, generation));
+        return document;
+    }
+
+    private Query parse(String keyword) {
+        if (!StringUtils.hasText(keyword)) {
+            throw new BusinessException(ErrorCode.PARAM_ERROR, "搜索关键词不能为空");
+        }
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(BOOSTS.keySet().toArray(new String[0]), analyzer, BOOSTS);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        try {
+            // 关键词按普通文本处理，不支持查询语法
+            return parser.parse(QueryParser.escape(keyword.trim()));
+        } catch (ParseException e) {
+            throw new BusinessException(ErrorCode.PARAM_ERROR, "搜索关键词无法解析");
+        }
+    }
+
+    // Highlighter不是线程安全的，每次搜索新建
+    private Highlighter highlighter(Query query) {
+        QueryScorer scorer = new QueryScorer(query);
+        Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter("<em>", "</em>"), new SimpleHTMLEncoder(), scorer);
+        highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, fragmentSize));
+        return highlighter;
+    }
+
+    /**
+     * @param whole 没命中时是否返回转义后的原文(标题)，否则返回null(正文)
+     */
+    private String highlight(Highlighter highlighter, String field, String text, boolean whole) throws IOException {
+        if (text == null) {
+            return null;
+        }
+        try {
+            String fragment = highlighter.getBestFragment(analyzer, field, text);
+            if (fragment != null) {
+                return fragment;
+            }
+        } catch (InvalidTokenOffsetsException e) {
+            log.debug("高亮{}失败：{}", field, e.getMessage());
+        }
+        return whole ? SimpleHTMLEncoder.htmlEncode(text) : null;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
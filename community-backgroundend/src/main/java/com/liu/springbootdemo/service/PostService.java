@@ -1,5 +1,6 @@
 package com.liu.springbootdemo.service;
 
+import com.liu.springbootdemo.POJO.Result.CursorPageResult;
 import com.liu.springbootdemo.POJO.Result.PageResult;
 import com.liu.springbootdemo.POJO.dto.CreatePostDTO;
 import com.liu.springbootdemo.POJO.entity.Post;
@@ -28,17 +29,19 @@ public interface PostService {
     /**
      * 分页获取帖子概要列表
      * @param pageable
+     * @param count 是否返回总数，false时total为null
      * @return PageResult<Total,Page<PostSummaryVO>>
      */
-    PageResult pagePostSummary(Pageable pageable);
+    PageResult pagePostSummary(Pageable pageable, boolean count);
 
     /**
      * 分页获取某用户的帖子概要列表
      * @param userId
      * @param pageable
+     * @param count 是否返回总数，false时total为null
      * @return PageResult<Total,Page<PostSummaryVO>>
      */
-    PageResult pagePostsByUserId(Long userId, Pageable pageable);
+    PageResult pagePostsByUserId(Long userId, Pageable pageable, boolean count);
 
     /**
      * 删除ID对应帖子
@@ -60,4 +63,45 @@ public interface PostService {
      * @return 列表
      */
     List<PostSummaryVO> getPostsByCursor(Long cursor, int size);
+
+    /**
+     * 游标分页获取已发布帖子概要列表，按修改时间倒序
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     * @param size 每页条数
+     * @return CursorPageResult<PostSummaryVO>
+     */
+    CursorPageResult<PostSummaryVO> seekPostSummary(String cursor, int size);
+
+    /**
+     * 游标分页获取某用户的帖子概要列表，可见范围同pagePostsByUserId
+     * @param userId 用户id
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     * @param size 每页条数
+     * @return CursorPageResult<PostSummaryVO>
+     */
+    CursorPageResult<PostSummaryVO> seekPostsByUserId(Long userId, String cursor, int size);
+
+    /**
+     * 游标分页获取分区下已发布的帖子概要列表，置顶的在前，其余按发布先后倒序
+     * @param categoryId 分区id
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     * @param size 每页条数
+     * @return CursorPageResult<PostSummaryVO>
+     */
+    CursorPageResult<PostSummaryVO> seekPostsByCategoryId(Long categoryId, String cursor, int size);
+
+    /**
+     * 分页获取热门帖子，按热度(互动数随发布时间衰减)倒序
+     * @param page 页码，从0开始
+     * @param size 每页条数
+     * @return 帖子概要列表
+     */
+    List<PostSummaryVO> getHotPosts(int page, int size);
+
+    /**
+     * 批量获取帖子详情，可见性同getPostById，无权查看和不存在的跳过
+     * @param postIds 帖子id列表
+     * @return 帖子详情列表，顺序同postIds
+     */
+    List<PostDetailVO> getPostsByIds(List<Long> postIds);
 }
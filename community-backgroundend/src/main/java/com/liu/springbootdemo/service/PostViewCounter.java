@@ -0,0 +1,247 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.mapper.PostMapper;
+import com.liu.springbootdemo.mapper.PostViewFlushLogMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 帖子浏览量计数
+ * 浏览时只在本实例内存里累加(LongAdder分段计数，热门帖子不抢同一把锁)；
+ * 每秒把各帖子的增量HINCRBY合并到Redis的累计hash，所有实例共用；
+ * 定时由一个实例把累计hash改名为待写库hash，分批用CASE UPDATE累加到posts.view_count
+ * 重启不重复累加：批次号和浏览量更新在同一事务里写入post_view_flush_log，
+ * 写库后、删除待写库hash前宕机的话，下次重试插入同一批次号会主键冲突，直接跳过更新
+ * 代价：实例宕机(非正常关闭)时最多丢失一秒内的本地计数；Redis不可用期间计数留在本地
+ * 指标：post.view.flush.lag(距上次成功写库秒数)、post.view.flush.batch(每次写库的帖子数)
+ */
+@Slf4j
+@Service
+public class PostViewCounter {
+
+    private static final String PENDING_KEY = "post:views:pending";
+    private static final String FLUSHING_KEY = "post:views:flushing";
+    private static final String BATCH_ID_KEY = "post:views:flushing:batch";
+    private static final String FLUSH_LOCK_KEY = "post:views:flush-lock";
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private PostViewFlushLogMapper postViewFlushLogMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisScript<String> viewFlushBeginScript;
+    @Autowired
+    private RedisScript<Long> releaseLockScript;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每条UPDATE最多更新的行数
+    @Value("${community.post-view.batch-size:500}")
+    private int batchSize;
+    // 写库锁秒数，应大于一次写库的耗时
+    @Value("${community.post-view.flush-lock-seconds:120}")
+    private long flushLockSeconds;
+
+    // 本地增量：帖子id -> 计数
+    private final ConcurrentHashMap<Long, LongAdder> local = new ConcurrentHashMap<>();
+    // 上一轮合并时已为0的帖子，这一轮仍为0才移除，不反复创建计数器
+    private final Map<Long, Boolean> idle = new HashMap<>();
+    // 上一轮移除的计数器：record可能在移除前拿到引用、移除后才加上，下一轮再收一次
+    private final Map<Long, LongAdder> retired = new HashMap<>();
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+    private DistributionSummary batchSummary;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("post.view.flush.lag", this, s -> (System.currentTimeMillis() - s.lastFlushMillis) / 1000.0)
+                .description("距上次浏览量成功写库的秒数").baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("post.view.local", local, Map::size)
+                .description("本地待合并的帖子数").register(meterRegistry);
+        batchSummary = DistributionSummary.builder("post.view.flush.batch")
+                .description("每次写库的帖子数").register(meterRegistry);
+    }
+
+    /**
+     * 记录一次浏览
+     * @param postId 帖子id
+     */
+    public void record(Long postId) {
+        LongAdder adder = local.get(postId);
+        if (adder == null) {
+            adder = local.computeIfAbsent(postId, id -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * 本地增量合并到Redis，一次管道往返
+     */
+    @Scheduled(fixedDelayString = "${community.post-view.merge-interval-ms:1000}")
+    public synchronized void mergeToRedis() {
+        Map<Long, Long> deltas = new HashMap<>();
+        retired.forEach((postId, adder) -> {
+            long late = adder.sumThenReset();
+            if (late > 0) {
+                deltas.put(postId, late);
+            }
+        });
+        retired.clear();
+        Iterator<Map.Entry<Long, LongAdder>> entries = local.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, LongAdder> entry = entries.next();
+            Long postId = entry.getKey();
+            LongAdder adder = entry.getValue();
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.merge(postId, delta, Long::sum);
+                idle.remove(postId);
+            } else if (idle.remove(postId) == null) {
+                idle.put(postId, Boolean.TRUE);
+            } else if (local.remove(postId, adder)) {
+                // 只移除还是这个计数器的映射；刚读完0到移除之间加上的，以及移除后才加上的，都留给下一轮
+                retired.put(postId, adder);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                deltas.forEach((postId, delta) -> stringConnection.hIncrBy(PENDING_KEY, postId.toString(), delta));
+                return null;
+            });
+        } catch (Exception e) {
+            // 放回本地，下次再合并
+            deltas.forEach((postId, delta) -> local.computeIfAbsent(postId, id -> new LongAdder()).add(delta));
+            log.warn("合并{}个帖子的浏览量到Redis失败，下次重试：{}", deltas.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 把Redis里累计的浏览量写库，多实例时只有拿到锁的实例执行
+     */
+    @Scheduled(fixedDelayString = "${community.post-view.flush-interval-ms:30000}")
+    public void flushToDatabase() {
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(FLUSH_LOCK_KEY, lockToken, flushLockSeconds, TimeUnit.SECONDS);
+            if (!Boolean.TRUE.equals(locked)) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("获取浏览量写库锁失败：{}", e.getMessage());
+            return;
+        }
+        try {
+            String batchId = stringRedisTemplate.execute(viewFlushBeginScript,
+                    List.of(PENDING_KEY, FLUSHING_KEY, BATCH_ID_KEY), UUID.randomUUID().toString());
+            if (batchId != null) {
+                flushBatch(batchId);
+            }
+            lastFlushMillis = System.currentTimeMillis();
+        } catch (Exception e) {
+            // 待写库hash留在Redis，下次用同一批次号重试
+            log.warn("浏览量写库失败，下次重试：{}", e.getMessage());
+        } finally {
+            releaseLock(lockToken);
+        }
+    }
+
+    /**
+     * 清理一周前的写库日志
+     */
+    @Scheduled(cron = "${community.post-view.log-cleanup-cron:0 0 5 * * *}")
+    public void cleanupFlushLog() {
+        try {
+            postViewFlushLogMapper.deleteBefore(LocalDateTime.now().minusDays(7));
+        } catch (Exception e) {
+            log.warn("清理浏览量写库日志失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 应用关闭前把本地计数合并到Redis，由之后的写库带走
+     */
+    @PreDestroy
+    public void mergeOnShutdown() {
+        mergeToRedis();
+        if (!local.isEmpty() && local.values().stream().anyMatch(adder -> adder.sum() > 0)) {
+            log.warn("应用关闭，部分帖子浏览量未能合并到Redis");
+        }
+    }
+
+    private void flushBatch(String batchId) {
+        Map<Long, Long> deltas = new HashMap<>();
+        stringRedisTemplate.<String, String>opsForHash().entries(FLUSHING_KEY)
+                .forEach((postId, delta) -> deltas.put(Long.valueOf(postId), Long.valueOf(delta)));
+        long viewCount = deltas.values().stream().mapToLong(Long::longValue).sum();
+
+        boolean applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            try {
+                // 先插日志占住批次号，同一批次已写过则主键冲突
+                postViewFlushLogMapper.insert(batchId, deltas.size(), viewCount);
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+            Map<Long, Long> chunk = new HashMap<>();
+            for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+                chunk.put(entry.getKey(), entry.getValue());
+                if (chunk.size() >= batchSize) {
+                    postMapper.addViewCounts(chunk);
+                    chunk = new HashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                postMapper.addViewCounts(chunk);
+            }
+            return true;
+        }));
+        stringRedisTemplate.delete(List.of(FLUSHING_KEY, BATCH_ID_KEY));
+
+        if (applied) {
+            batchSummary.record(deltas.size());
+            log.info("浏览量写库完成：批次{}，{}个帖子，共{}次浏览", batchId, deltas.size(), viewCount);
+        } else {
+            log.warn("浏览量批次{}此前已写库，跳过", batchId);
+        }
+    }
+
+    private void releaseLock(String lockToken) {
+        try {
+            // 比对和删除在一个脚本里完成，锁恰好过期被其他实例拿到时不会误删
+            stringRedisTemplate.execute(releaseLockScript, List.of(FLUSH_LOCK_KEY), lockToken);
+        } catch (Exception e) {
+            log.warn("释放浏览量写库锁失败，{}秒后自动过期：{}", flushLockSeconds, e.getMessage());
+        }
+    }
+}
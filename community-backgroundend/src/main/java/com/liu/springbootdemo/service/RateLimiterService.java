@@ -0,0 +1,124 @@
+package com.liu.springbootdemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 滑动窗口限流
+ * 正常情况走Redis Lua脚本，所有实例共享计数，每次检查一次往返；
+ * Redis报错或耗时超过slow-threshold-ms时熔断degrade-seconds秒，期间只用本地内存限流，
+ * 本地限流按实例各自计数，多实例部署时整体放行量会变宽，但不会因Redis故障拖慢请求或完全不限
+ */
+@Slf4j
+@Service
+public class RateLimiterService {
+
+    private static final String KEY_PREFIX = "rate:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisScript<Long> slidingWindowScript;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${community.rate-limit.enabled:true}")
+    private boolean enabled;
+    // Redis限流单次耗时超过该值即视为慢，转入本地限流
+    @Value("${community.rate-limit.slow-threshold-ms:50}")
+    private long slowThresholdMillis;
+    // 熔断后只用本地限流的秒数，之后再试Redis
+    @Value("${community.rate-limit.degrade-seconds:30}")
+    private long degradeSeconds;
+
+    // 熔断截止时间戳，之前只走本地
+    private volatile long degradedUntil;
+    // 本地窗口：限流key -> 放行时间戳队列，超过1小时没访问的key自动清掉
+    private Cache<String, Deque<Long>> localWindows;
+    private Counter degradeCounter;
+
+    @PostConstruct
+    public void init() {
+        localWindows = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+        degradeCounter = Counter.builder("rate.limit.degrade")
+                .description("Redis限流熔断转本地的次数").register(meterRegistry);
+        Gauge.builder("rate.limit.degraded", this, s -> s.isDegraded() ? 1 : 0)
+                .description("当前是否处于本地限流模式").register(meterRegistry);
+    }
+
+    /**
+     * 尝试获取一次许可
+     * @param key 限流key，不含前缀
+     * @param permits 窗口内上限
+     * @param windowMillis 窗口毫秒数
+     * @return 0为放行，否则为还需等待的毫秒数
+     */
+    public long tryAcquire(String key, int permits, long windowMillis) {
+        if (!enabled) {
+            return 0;
+        }
+        if (isDegraded()) {
+            return tryAcquireLocal(key, permits, windowMillis);
+        }
+        long start = System.nanoTime();
+        try {
+            Long waitMillis = stringRedisTemplate.execute(slidingWindowScript, List.of(KEY_PREFIX + key),
+                    String.valueOf(windowMillis), String.valueOf(permits),
+                    Long.toHexString(ThreadLocalRandom.current().nextLong()));
+            long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (costMillis > slowThresholdMillis) {
+                degrade("Redis限流耗时" + costMillis + "ms");
+            }
+            return waitMillis == null ? 0 : waitMillis;
+        } catch (Exception e) {
+            degrade(e.getMessage());
+            return tryAcquireLocal(key, permits, windowMillis);
+        }
+    }
+
+    public boolean isDegraded() {
+        return System.currentTimeMillis() < degradedUntil;
+    }
+
+    private void degrade(String reason) {
+        if (!isDegraded()) {
+            degradeCounter.increment();
+            log.warn("限流转为本地模式{}秒，原因：{}", degradeSeconds, reason);
+        }
+        degradedUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(degradeSeconds);
+    }
+
+    private long tryAcquireLocal(String key, int permits, long windowMillis) {
+        Deque<Long> timestamps = localWindows.get(key, k -> new ArrayDeque<>());
+        synchronized (timestamps) {
+            long now = System.currentTimeMillis();
+            while (!timestamps.isEmpty() && timestamps.peekFirst() <= now - windowMillis) {
+                timestamps.pollFirst();
+            }
+            if (timestamps.size() < permits) {
+                timestamps.addLast(now);
+                return 0;
+            }
+            return Math.max(timestamps.peekFirst() + windowMillis - now, 1);
+        }
+    }
+}
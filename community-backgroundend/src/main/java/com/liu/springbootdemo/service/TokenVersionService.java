@@ -0,0 +1,112 @@
+package com.liu.springbootdemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liu.springbootdemo.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户Token版本号服务
+ * 无状态认证下Token里带着签发时的版本号tv，每次请求和当前版本号比对：
+ * 封禁、改角色、删除用户时版本号+1(或消失)，旧Token随即失效
+ * 查询顺序：本地短TTL缓存 -> Redis -> MySQL，Redis不可用时直接回源MySQL
+ */
+@Slf4j
+@Service
+public class TokenVersionService {
+
+    private static final String REDIS_KEY_PREFIX = "user:token-version:";
+    private static final long REDIS_TTL_HOURS = 24;
+
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 本地缓存的存活秒数，决定封禁/改角色后最迟多久在所有节点生效
+    @Value("${community.jwt.version-cache-seconds:5}")
+    private long versionCacheSeconds;
+
+    // 用户不存在时缓存Optional.empty()，避免已删除用户的Token反复回源
+    private Cache<Long, Optional<Integer>> localVersions;
+
+    @PostConstruct
+    public void init() {
+        localVersions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(versionCacheSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取用户当前Token版本号
+     * @param userId 用户id
+     * @return 版本号，用户不存在返回null
+     */
+    public Integer currentVersion(Long userId) {
+        return localVersions.get(userId, this::loadVersion).orElse(null);
+    }
+
+    /**
+     * 版本号+1，令该用户已签发的Token全部失效
+     * @param userId 用户id
+     */
+    public void bump(Long userId) {
+        userMapper.incrementTokenVersion(userId);
+        localVersions.invalidate(userId);
+        Integer version = userMapper.findTokenVersionById(userId);
+        try {
+            if (version == null) {
+                stringRedisTemplate.delete(REDIS_KEY_PREFIX + userId);
+            } else {
+                // 直接覆盖为新版本，而回源时只用SETNX写入，避免并发回源把旧版本写回去
+                stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + userId, version.toString(), REDIS_TTL_HOURS, TimeUnit.HOURS);
+            }
+        } catch (Exception e) {
+            log.warn("刷新用户{}的Token版本缓存失败：{}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 清除缓存的版本号，下次校验重新回源(用户被删除时也调用)
+     * @param userId 用户id
+     */
+    public void evict(Long userId) {
+        localVersions.invalidate(userId);
+        try {
+            stringRedisTemplate.delete(REDIS_KEY_PREFIX + userId);
+        } catch (Exception e) {
+            log.warn("删除用户{}的Token版本缓存失败：{}", userId, e.getMessage());
+        }
+    }
+
+    private Optional<Integer> loadVersion(Long userId) {
+        String key = REDIS_KEY_PREFIX + userId;
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                return Optional.of(Integer.valueOf(cached));
+            }
+        } catch (Exception e) {
+            log.warn("Redis读取Token版本失败，回源数据库：{}", e.getMessage());
+            return Optional.ofNullable(userMapper.findTokenVersionById(userId));
+        }
+        Integer version = userMapper.findTokenVersionById(userId);
+        if (version != null) {
+            try {
+                stringRedisTemplate.opsForValue().setIfAbsent(key, version.toString(), REDIS_TTL_HOURS, TimeUnit.HOURS);
+            } catch (Exception e) {
+                log.warn("写入用户{}的Token版本缓存失败：{}", userId, e.getMessage());
+            }
+        }
+        return Optional.ofNullable(version);
+    }
+}
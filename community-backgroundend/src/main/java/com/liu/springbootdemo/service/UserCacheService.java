@@ -0,0 +1,296 @@
+package com.liu.springbootdemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liu.springbootdemo.POJO.entity.User;
+import com.liu.springbootdemo.common.utils.CacheJsonUtil;
+import com.liu.springbootdemo.mapper.UserMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户信息两级缓存
+ * 查询顺序：本地Caffeine -> Redis(JSON) -> MySQL，Redis不可用时直接回源MySQL
+ * 批量查询时每一层都只走一次：本地批量取、Redis一次MGET、MySQL一条IN查询
+ * 用户信息变更后调用evict，通过Redis发布订阅通知所有实例清掉各自的本地缓存
+ * 缓存里的User不带密码(登录校验密码仍直接查库)，返回的对象是共享的，调用方只读不改
+ * 最后登录时间等不主动失效的字段，最多滞后一个缓存TTL
+ * 指标：user.local.*(本地层，Caffeine统计) 和 user.cache.redis{result=hit|miss}(Redis层)
+ */
+@Slf4j
+@Service
+public class UserCacheService implements MessageListener {
+
+    private static final String REDIS_KEY_PREFIX = "user:info:";
+    private static final String USERNAME_KEY_PREFIX = "user:name-id:";
+    // 失效广播频道，消息体为用户id
+    private static final String EVICT_CHANNEL = "user:cache:evict";
+
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 本地缓存条数上限，按活跃用户数调整，参考user.local.size和命中率指标
+    @Value("${community.user-cache.local-maximum-size:10000}")
+    private long localMaximumSize;
+    // 本地缓存秒数，失效广播丢失时的兜底
+    @Value("${community.user-cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+    @Value("${community.user-cache.redis-ttl-minutes:30}")
+    private long redisTtlMinutes;
+
+    private Cache<Long, User> localUsers;
+    // 用户名 -> id 索引，只存id，改名后由getByUsername校验发现并自愈
+    private Cache<String, Long> localUsernameIds;
+    private Counter redisHits;
+    private Counter redisMisses;
+
+    @PostConstruct
+    public void init() {
+        localUsers = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        localUsernameIds = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localUsers, "user.local");
+        redisHits = Counter.builder("user.cache.redis").tag("result", "hit")
+                .description("用户缓存Redis层命中次数").register(meterRegistry);
+        redisMisses = Counter.builder("user.cache.redis").tag("result", "miss")
+                .description("用户缓存Redis层未命中次数").register(meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * 根据id获取用户
+     * @param id 用户id
+     * @return 用户(不含密码)，不存在返回null
+     */
+    public User getById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return localUsers.get(id, this::loadById);    // loader返回null时不缓存
+    }
+
+    /**
+     * 根据id批量获取用户
+     * @param ids 用户id
+     * @return 用户id -> 用户(不含密码)，不存在的id不在结果里
+     */
+    public Map<Long, User> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return localUsers.getAll(ids, this::loadByIds);     // 结果里没有的id不缓存
+    }
+
+    /**
+     * 根据用户名获取用户
+     * @param username 用户名
+     * @return 用户(不含密码)，不存在返回null
+     */
+    public User getByUsername(String username) {
+        Long id = localUsernameIds.get(username, this::loadIdByUsername);
+        if (id == null) {
+            return null;
+        }
+        User user = getById(id);
+        if (user != null && username.equals(user.getUsername())) {
+            return user;
+        }
+        // 索引指向的用户已改名或被删除，清掉索引直接查库
+        localUsernameIds.invalidate(username);
+        deleteQuietly(USERNAME_KEY_PREFIX + username);
+        User userInDb = stripPassword(userMapper.findByUsername(username));
+        if (userInDb != null) {
+            writeRedis(userInDb);
+        }
+        return userInDb;
+    }
+
+    /**
+     * 用户信息变更后调用，清除两级缓存并广播给其他实例
+     * @param id 用户id
+     */
+    public void evict(Long id) {
+        User cached = localUsers.getIfPresent(id);
+        localUsers.invalidate(id);
+        try {
+            String key = REDIS_KEY_PREFIX + id;
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json != null) {
+                cached = CacheJsonUtil.fromJson(json, User.class);
+            }
+            stringRedisTemplate.delete(key);
+            if (cached != null) {
+                localUsernameIds.invalidate(cached.getUsername());
+                stringRedisTemplate.delete(USERNAME_KEY_PREFIX + cached.getUsername());
+            }
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, id.toString());
+        } catch (Exception e) {
+            // 其他实例的本地缓存只能等localTtlSeconds后自然过期
+            log.warn("清除用户{}的缓存失败：{}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他实例(也包括自己)的失效广播，清掉本地缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            localUsers.invalidate(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法识别的用户缓存失效消息：{}", message);
+        }
+    }
+
+    private User loadById(Long id) {
+        String key = REDIS_KEY_PREFIX + id;
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json != null) {
+                redisHits.increment();
+                return CacheJsonUtil.fromJson(json, User.class);
+            }
+            redisMisses.increment();
+        } catch (Exception e) {
+            log.warn("Redis读取用户{}失败，回源数据库：{}", id, e.getMessage());
+            return stripPassword(userMapper.findById(id));
+        }
+        User user = stripPassword(userMapper.findById(id));
+        if (user != null) {
+            writeRedis(user);
+        }
+        return user;
+    }
+
+    private Map<Long, User> loadByIds(Set<? extends Long> ids) {
+        Map<Long, User> result = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        List<Long> missing = new ArrayList<>();
+        try {
+            List<String> values = stringRedisTemplate.opsForValue()
+                    .multiGet(idList.stream().map(id -> REDIS_KEY_PREFIX + id).toList());
+            for (int i = 0; i < idList.size(); i++) {
+                String json = values == null ? null : values.get(i);
+                if (json != null) {
+                    result.put(idList.get(i), CacheJsonUtil.fromJson(json, User.class));
+                } else {
+                    missing.add(idList.get(i));
+                }
+            }
+            redisHits.increment(result.size());
+            redisMisses.increment(missing.size());
+        } catch (Exception e) {
+            log.warn("Redis批量读取{}个用户失败，回源数据库：{}", idList.size(), e.getMessage());
+            userMapper.findByIds(idList).forEach(user -> result.put(user.getId(), stripPassword(user)));
+            return result;
+        }
+        if (!missing.isEmpty()) {
+            List<User> loaded = userMapper.findByIds(missing);
+            loaded.forEach(user -> result.put(user.getId(), stripPassword(user)));
+            writeRedis(loaded);
+        }
+        return result;
+    }
+
+    private Long loadIdByUsername(String username) {
+        String key = USERNAME_KEY_PREFIX + username;
+        try {
+            String cachedId = stringRedisTemplate.opsForValue().get(key);
+            if (cachedId != null) {
+                return Long.valueOf(cachedId);
+            }
+        } catch (Exception e) {
+            log.warn("Redis读取用户名{}索引失败，回源数据库：{}", username, e.getMessage());
+        }
+        User user = stripPassword(userMapper.findByUsername(username));
+        if (user == null) {
+            return null;
+        }
+        writeRedis(user);
+        return user.getId();
+    }
+
+    // 写入用户信息和用户名索引，TTL加随机抖动，避免同一时刻大量过期
+    private void writeRedis(User user) {
+        long ttlSeconds = TimeUnit.MINUTES.toSeconds(redisTtlMinutes);
+        ttlSeconds += ThreadLocalRandom.current().nextLong(ttlSeconds / 10 + 1);
+        try {
+            stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + user.getId(), CacheJsonUtil.toJson(user), ttlSeconds, TimeUnit.SECONDS);
+            stringRedisTemplate.opsForValue().set(USERNAME_KEY_PREFIX + user.getUsername(), user.getId().toString(), ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入用户{}的缓存失败：{}", user.getId(), e.getMessage());
+        }
+    }
+
+    // 批量写入，管道一次往返
+    private void writeRedis(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        long baseTtlSeconds = TimeUnit.MINUTES.toSeconds(redisTtlMinutes);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (User user : users) {
+                    long ttlSeconds = baseTtlSeconds + ThreadLocalRandom.current().nextLong(baseTtlSeconds / 10 + 1);
+                    stringConnection.setEx(REDIS_KEY_PREFIX + user.getId(), ttlSeconds, CacheJsonUtil.toJson(user));
+                    stringConnection.setEx(USERNAME_KEY_PREFIX + user.getUsername(), ttlSeconds, user.getId().toString());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("批量写入{}个用户的缓存失败：{}", users.size(), e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("删除缓存{}失败：{}", key, e.getMessage());
+        }
+    }
+
+    // 密码哈希不进缓存
+    private static User stripPassword(User user) {
+        if (user != null) {
+            user.setPassword(null);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,237 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.common.utils.BloomFilter;
+import com.liu.springbootdemo.mapper.UserMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * 用户名/邮箱存在性布隆过滤器
+ * 启动后在后台流式读users表构建，注册成功、改用户名时加入，并通过Redis发布订阅同步给其他实例；
+ * 过滤器说不存在就直接返回，不查库，说可能存在再查库确认
+ * 布隆过滤器不能删除，删掉的用户要等每天定时重建后才移出；构建完成前一律查库
+ * 库表排序规则不区分大小写，放入和查询前统一转小写
+ * 指标：user.bloom.check{type,result=miss|hit|false-positive}，实际误判率 = false-positive / (false-positive + miss)；
+ * user.bloom.expected-fpp{type} 为按当前元素数估算的误判率
+ */
+@Slf4j
+@Service
+public class UserExistenceFilter implements MessageListener {
+
+    // 新增广播频道，消息体为 u:用户名 或 e:邮箱
+    private static final String ADD_CHANNEL = "user:bloom:add";
+
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${community.user-bloom.enabled:true}")
+    private boolean enabled;
+    // 预计用户数下限，实际用户数更多时按实际的2倍建
+    @Value("${community.user-bloom.expected-insertions:100000}")
+    private long expectedInsertions;
+    @Value("${community.user-bloom.fpp:0.01}")
+    private double fpp;
+
+    // 构建完成前为null，查询一律回源数据库
+    private volatile BloomFilter usernames;
+    private volatile BloomFilter emails;
+    // 重建期间新注册的同时写入正在构建的过滤器，防止换上新过滤器后漏掉
+    private volatile BloomFilter buildingUsernames;
+    private volatile BloomFilter buildingEmails;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("user.bloom.expected-fpp", this, s -> expectedFpp(s.usernames)).tag("type", "username")
+                .description("用户名过滤器估算误判率").register(meterRegistry);
+        Gauge.builder("user.bloom.expected-fpp", this, s -> expectedFpp(s.emails)).tag("type", "email")
+                .description("邮箱过滤器估算误判率").register(meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(ADD_CHANNEL));
+    }
+
+    /**
+     * 应用就绪后在后台构建，数据库暂不可用则每30秒重试，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(() -> {
+            while (usernames == null && event.getApplicationContext().isActive()) {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.warn("构建用户名/邮箱布隆过滤器失败，30秒后重试：{}", e.getMessage());
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }, "user-bloom-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 定时重建，移出已删除的用户，并按用户增长重新计算容量
+     */
+    @Scheduled(cron = "${community.user-bloom.rebuild-cron:0 30 4 * * *}")
+    public void scheduledRebuild() {
+        if (!enabled || usernames == null) {
+            return;     // 启动时的构建还没成功，交给启动线程
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("重建用户名/邮箱布隆过滤器失败，继续使用旧过滤器：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用户名是否已存在
+     * @param username 用户名
+     * @return 存在返回true
+     */
+    public boolean usernameExists(String username) {
+        return exists("username", usernames, username, name -> userMapper.findByUsername(name) != null);
+    }
+
+    /**
+     * 邮箱是否已被注册
+     * @param email 邮箱
+     * @return 存在返回true
+     */
+    public boolean emailExists(String email) {
+        return exists("email", emails, email, mail -> userMapper.findByEmail(mail) != null);
+    }
+
+    /**
+     * 新用户名/邮箱写库成功后调用，加入本地过滤器并广播给其他实例
+     * @param username 用户名，可为空
+     * @param email 邮箱，可为空
+     */
+    public void add(String username, String email) {
+        if (StringUtils.hasText(username)) {
+            String value = normalize(username);
+            addLocal(value, buildingUsernames, usernames);
+            publish("u:" + value);
+        }
+        if (StringUtils.hasText(email)) {
+            String value = normalize(email);
+            addLocal(value, buildingEmails, emails);
+            publish("e:" + value);
+        }
+    }
+
+    /**
+     * 收到其他实例(也包括自己)的新增广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith("u:")) {
+            addLocal(body.substring(2), buildingUsernames, usernames);
+        } else if (body.startsWith("e:")) {
+            addLocal(body.substring(2), buildingEmails, emails);
+        } else {
+            log.warn("忽略无法识别的布隆过滤器消息：{}", body);
+        }
+    }
+
+    private boolean exists(String type, BloomFilter filter, String value, Function<String, Boolean> loader) {
+        if (filter != null && !filter.mightContain(normalize(value))) {
+            count(type, "miss");
+            return false;
+        }
+        boolean exists = loader.apply(value);
+        if (filter != null) {
+            count(type, exists ? "hit" : "false-positive");
+        }
+        return exists;
+    }
+
+    private synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        long capacity = Math.max(expectedInsertions, userMapper.countAll() * 2);
+        BloomFilter newUsernames = new BloomFilter(capacity, fpp);
+        BloomFilter newEmails = new BloomFilter(capacity, fpp);
+        buildingUsernames = newUsernames;
+        buildingEmails = newEmails;
+        try {
+            userMapper.streamAccounts(context -> {
+                if (StringUtils.hasText(context.getResultObject().getUsername())) {
+                    newUsernames.put(normalize(context.getResultObject().getUsername()));
+                }
+                if (StringUtils.hasText(context.getResultObject().getEmail())) {
+                    newEmails.put(normalize(context.getResultObject().getEmail()));
+                }
+            });
+            // 先换上新过滤器再清掉building，add里先读building后读当前，两者之间的新增不会漏
+            usernames = newUsernames;
+            emails = newEmails;
+        } finally {
+            buildingUsernames = null;
+            buildingEmails = null;
+        }
+        log.info("用户名/邮箱布隆过滤器已构建：{}个用户，容量{}，耗时{}ms",
+                newUsernames.getInsertions(), capacity, System.currentTimeMillis() - start);
+    }
+
+    private static void addLocal(String value, BloomFilter building, BloomFilter current) {
+        if (building != null) {
+            building.put(value);
+        }
+        if (current != null) {
+            current.put(value);
+        }
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(ADD_CHANNEL, message);
+        } catch (Exception e) {
+            // 其他实例等下次重建才能加入，期间的重复注册由库表唯一索引兜底
+            log.warn("广播布隆过滤器新增失败：{}", e.getMessage());
+        }
+    }
+
+    private void count(String type, String result) {
+        Counter.builder("user.bloom.check").tag("type", type).tag("result", result)
+                .register(meterRegistry).increment();
+    }
+
+    private static double expectedFpp(BloomFilter filter) {
+        return filter == null ? Double.NaN : filter.expectedFpp();
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
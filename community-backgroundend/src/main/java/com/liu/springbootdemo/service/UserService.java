@@ -2,18 +2,29 @@ package com.liu.springbootdemo.service;
 
 import com.liu.springbootdemo.POJO.dto.user.RegisterDTO;
 import com.liu.springbootdemo.POJO.dto.user.UpdateUserDTO;
+import com.liu.springbootdemo.POJO.vo.AvailabilityVO;
 import com.liu.springbootdemo.POJO.vo.LoginResponseVO;
 import com.liu.springbootdemo.POJO.entity.User;
 import com.liu.springbootdemo.POJO.vo.UpdateUserVO;
+import com.liu.springbootdemo.common.enums.UserRole;
 import jakarta.validation.constraints.Email;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface UserService {
     // 定义注册用户的业务方法
     void register(RegisterDTO registerDTO);
 
+    /**
+     * 检查用户名/邮箱是否可用
+     * @param username 用户名，可为空
+     * @param email 邮箱，可为空
+     * @return 各项是否可用，未传的项为null
+     */
+    AvailabilityVO checkAvailability(String username, String email);
+
     // 定义登录用户的业务方法
     LoginResponseVO login(String username, String password);
 
@@ -46,5 +57,26 @@ public interface UserService {
 
     void sendRegisterCode(@Email String email);
 
+    /**
+     * 管理员封禁用户，已签发的Token随之失效
+     * @param id 用户id
+     * @param banReason 封禁原因
+     * @param banUntil 封禁截止时间
+     */
+    void banUser(Long id, String banReason, LocalDateTime banUntil);
+
+    /**
+     * 管理员解封用户
+     * @param id 用户id
+     */
+    void unbanUser(Long id);
+
+    /**
+     * 管理员修改用户角色，已签发的Token随之失效
+     * @param id 用户id
+     * @param role 新角色
+     */
+    void changeRole(Long id, UserRole role);
+
 
 }
@@ -0,0 +1,53 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.User;
+import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 帖子列表的作者信息批量填充
+ * 列表查询只扫posts一张表，查出一页后收集去重的作者id，一次从用户缓存批量取回再填到每条帖子上，
+ * 代替每条SQL都LEFT JOIN users；作者改名、换头像后清掉用户缓存即可生效，不用重建帖子相关缓存
+ */
+@Service
+public class UserSummaryLoader {
+
+    @Autowired
+    private UserCacheService userCacheService;
+
+    /**
+     * 填充作者的用户名和头像，作者已不存在的保持为空
+     * 直接改传入的对象，不能传缓存里共用的实例(PostCacheService.getSummaries返回的已是副本)
+     * @param posts 帖子概要，需带userId
+     * @return 传入的posts，便于链式返回
+     */
+    public <C extends Collection<PostSummaryVO>> C fillAuthors(C posts) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (PostSummaryVO post : posts) {
+            if (post.getUserId() != null) {
+                userIds.add(post.getUserId());
+            }
+        }
+        if (userIds.isEmpty()) {
+            return posts;
+        }
+        Map<Long, User> users = userCacheService.getByIds(userIds);
+        for (PostSummaryVO post : posts) {
+            User author = users.get(post.getUserId());
+            if (author != null) {
+                post.setUsername(author.getUsername());
+                post.setUserAvatarUrl(author.getAvatarUrl());
+            } else {
+                post.setUsername(null);
+                post.setUserAvatarUrl(null);
+            }
+        }
+        return posts;
+    }
+}
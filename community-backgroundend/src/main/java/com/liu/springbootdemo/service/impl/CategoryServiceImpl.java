@@ -13,6 +13,7 @@ import com.liu.springbootdemo.POJO.entity.Category;
 import com.liu.springbootdemo.common.exception.BusinessException;
 import com.liu.springbootdemo.mapper.CategoryMapper;
 import com.liu.springbootdemo.mapper.PostMapper;
+import com.liu.springbootdemo.service.CategoryRegistry;
 import com.liu.springbootdemo.service.CategoryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -33,6 +34,8 @@ public class CategoryServiceImpl implements CategoryService {
     private CategoryMapper categoryMapper;
     @Autowired
     private PostMapper postMapper;
+    @Autowired
+    private CategoryRegistry categoryRegistry;
 
 
     @Override
@@ -59,6 +62,7 @@ public class CategoryServiceImpl implements CategoryService {
             log.error("分区创建失败，数据库插入影响行数不为1");
             throw new BusinessException(ErrorCode.CATEGORY_CREATE_FAILED);
         }
+        categoryRegistry.changed();
         //Entity -> VO
         return convertToAdminVO(category);
     }
@@ -136,6 +140,7 @@ public class CategoryServiceImpl implements CategoryService {
         if(dto.getSortOrder() != null){
             categoryMapper.updateSortOrder(dto.getId(), dto.getSortOrder());
         }
+        categoryRegistry.changed();
 
         return convertToAdminVO(categoryMapper.findById(category.getId()));
     }
@@ -154,6 +159,7 @@ public class CategoryServiceImpl implements CategoryService {
     public void enableCategory(Long id) {
         easyCheckCategoryExistById(id,"开启分区时");
         categoryMapper.enable(id);
+        categoryRegistry.changed();
     }
 
     @Override
@@ -161,6 +167,7 @@ public class CategoryServiceImpl implements CategoryService {
     public void disableCategory(Long id) {
         easyCheckCategoryExistById(id,"关闭分区时");
         categoryMapper.disable(id);
+        categoryRegistry.changed();
     }
 
     @Override
@@ -185,6 +192,7 @@ public class CategoryServiceImpl implements CategoryService {
         if(categoryMapper.deleteById(id)!=1){
             throw new BusinessException(ErrorCode.CATEGORY_DELETE_FAILED);
         }
+        categoryRegistry.changed();
     }
 
     /**
@@ -197,7 +205,7 @@ public class CategoryServiceImpl implements CategoryService {
         //先设置PageHelper本次的page和size，立刻跟上Mapper查询，然后组装返回
 
         //开始分页
-        PageHelper.startPage(dto.getPage(),dto.getPageSize());
+        PageHelper.startPage(dto.getPage(),dto.getPageSize(),dto.isCount());   //分区表很小，要总数时仍由PageHelper COUNT
 
         //Mapper查询，可能是AdminVO也可能是VO
         Page<Category> voPage = categoryMapper.pageQuery(dto);
@@ -210,7 +218,7 @@ public class CategoryServiceImpl implements CategoryService {
             voList = voPage.getResult().stream().map(this::convertToVO).collect(Collectors.toList());
         }
 
-        return new PageResult(voPage.getTotal(), voList);
+        return new PageResult(dto.isCount() ? voPage.getTotal() : null, voList);
     }
 
     // 私有辅助方法
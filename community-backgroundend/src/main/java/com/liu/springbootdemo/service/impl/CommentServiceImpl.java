@@ -1,12 +1,16 @@
 package com.liu.springbootdemo.service.impl;
 
 import com.liu.springbootdemo.POJO.entity.Comment;
-import com.liu.springbootdemo.POJO.entity.User;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.common.annotation.RateLimited;
+import com.liu.springbootdemo.common.enums.LimitDimension;
+import com.liu.springbootdemo.common.security.LoginUser;
 import com.liu.springbootdemo.common.enums.ErrorCode;
 import com.liu.springbootdemo.common.exception.BusinessException;
 import com.liu.springbootdemo.mapper.CommentMapper;
 import com.liu.springbootdemo.mapper.PostMapper;
 import com.liu.springbootdemo.service.CommentService;
+import com.liu.springbootdemo.service.HotPostService;
 import com.liu.springbootdemo.common.utils.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,7 +27,12 @@ public class CommentServiceImpl implements CommentService {
     @Autowired
     private PostMapper postMapper;
 
+    @Autowired
+    private HotPostService hotPostService;
+
     @Override
+    @RateLimited(name = "comment", dimension = LimitDimension.USER, permits = 10, window = 60,
+            errorCode = ErrorCode.COMMENT_TOO_FREQUENT)
     public Comment createComment(Long postId,Comment comment) {
         //1.获取当前用户，校验登录与否
         //2.校验帖子是否存在
@@ -32,12 +41,13 @@ public class CommentServiceImpl implements CommentService {
         //3.插入评论，返回
 
         //空检查
-        User currentUser = SecurityUtil.getCurrentUser();
+        LoginUser currentUser = SecurityUtil.getLoginUser();
         if(currentUser == null){
             throw new BusinessException(ErrorCode.UNAUTHORIZED,"未登录，请登录后评论");
         }
 
-        if(postMapper.findById(postId) == null){
+        Post post = postMapper.findBriefById(postId);
+        if(post == null){
             throw new BusinessException(ErrorCode.POST_NOT_FOUND,"评论的帖子消失啦！~");
         }
 
@@ -56,6 +66,7 @@ public class CommentServiceImpl implements CommentService {
         if(commentMapper.insert(comment) != 1){
             throw new RuntimeException("评论插入数据库失败！稍后重试");
         }
+        hotPostService.onComment(post);
 
         return commentMapper.findById(comment.getId());
     }
@@ -65,7 +76,7 @@ public class CommentServiceImpl implements CommentService {
         // 1.查空
         // 2.查合法
         // 3.调用
-        if(postMapper.findById(postId) == null){
+        if(postMapper.findBriefById(postId) == null){
             throw new BusinessException(ErrorCode.POST_NOT_FOUND,"查看的帖子不存在了？？！ 你，不应该来这✈️");//应该进不到这步吧，应该帖子页面都进不去调用不了这个评论,不过确实可以用url访问所以还是有必要的拦截
         }
 
@@ -78,7 +89,7 @@ public class CommentServiceImpl implements CommentService {
 
         //1.权限足够，已登录和认证用户是评论作者
         //2.评论存在，开始删除
-        User currentUser = SecurityUtil.getCurrentUser();
+        LoginUser currentUser = SecurityUtil.getLoginUser();
         if(currentUser == null){
             throw new BusinessException(ErrorCode.UNAUTHORIZED,"未登录，请先登录再删除评论~");
         }
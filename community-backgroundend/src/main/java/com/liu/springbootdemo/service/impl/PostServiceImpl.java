@@ -2,8 +2,10 @@ package com.liu.springbootdemo.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.liu.springbootdemo.POJO.Result.CursorPageResult;
 import com.liu.springbootdemo.POJO.Result.PageResult;
 import com.liu.springbootdemo.POJO.dto.CreatePostDTO;
+import com.liu.springbootdemo.POJO.entity.Category;
 import com.liu.springbootdemo.POJO.entity.Post;
 import com.liu.springbootdemo.POJO.entity.User;
 import com.liu.springbootdemo.POJO.vo.PostDetailVO;
@@ -13,20 +15,40 @@ import com.liu.springbootdemo.common.enums.PostStatus;
 import com.liu.springbootdemo.common.enums.UserRole;
 import com.liu.springbootdemo.common.exception.BusinessException;
 import com.liu.springbootdemo.converter.PostConverter;
-import com.liu.springbootdemo.mapper.CategoryMapper;
+import com.liu.springbootdemo.mapper.PostContentMapper;
 import com.liu.springbootdemo.mapper.PostMapper;
-import com.liu.springbootdemo.service.CategoryService;
+import com.liu.springbootdemo.service.CategoryRegistry;
+import com.liu.springbootdemo.service.DraftService;
+import com.liu.springbootdemo.service.HotPostService;
+import com.liu.springbootdemo.service.PostCacheService;
+import com.liu.springbootdemo.service.PostCountService;
+import com.liu.springbootdemo.service.PostRevisionService;
+import com.liu.springbootdemo.service.PostSearchService;
 import com.liu.springbootdemo.service.PostService;
+import com.liu.springbootdemo.service.PostViewCounter;
+import com.liu.springbootdemo.service.UniqueVisitorService;
 import com.liu.springbootdemo.service.UserService;
+import com.liu.springbootdemo.service.UserSummaryLoader;
+import com.liu.springbootdemo.common.annotation.RateLimited;
+import com.liu.springbootdemo.common.enums.LimitDimension;
+import com.liu.springbootdemo.common.security.LoginUser;
+import com.liu.springbootdemo.common.utils.CursorUtil;
 import com.liu.springbootdemo.common.utils.SecurityUtil;
+import com.liu.springbootdemo.common.utils.TransactionUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -35,26 +57,47 @@ public class PostServiceImpl implements PostService {
     @Autowired
     private PostMapper postMapper;
     @Autowired
-    private CategoryMapper categoryMapper;
+    private PostContentMapper postContentMapper;
 
     @Autowired
     private UserService userService;
     @Autowired
-    private CategoryService categoryService;
+    private CategoryRegistry categoryRegistry;
 
     @Autowired
     private PostConverter postConverter;
+    @Autowired
+    private PostCacheService postCacheService;
+    @Autowired
+    private PostViewCounter postViewCounter;
+    @Autowired
+    private UniqueVisitorService uniqueVisitorService;
+    @Autowired
+    private PostCountService postCountService;
+    @Autowired
+    private HotPostService hotPostService;
+    @Autowired
+    private UserSummaryLoader userSummaryLoader;
+    @Autowired
+    private DraftService draftService;
+    @Autowired
+    private PostRevisionService postRevisionService;
+    @Autowired
+    private PostSearchService postSearchService;
 
 
     /**
      * 新建帖子 DTO版
+     * 分区校验和分区名走进程内分区表，返回值直接用写入的对象加上自增id，写库只有INSERT
      * @param createPostDTO
      * @return
      */
     @Override
+    @RateLimited(name = "post", dimension = LimitDimension.USER, permits = 5, window = 60)
+    @Transactional  //posts和post_contents两张表一起写
     public PostDetailVO createPost(CreatePostDTO createPostDTO) {
         //1. 从SecurityContext获取当前登录用户的信息
-        User currentUser = SecurityUtil.getCurrentUser();
+        LoginUser currentUser = SecurityUtil.getLoginUser();
 
         //post占位待填充进数据库
         Post post = new Post();
@@ -64,27 +107,45 @@ public class PostServiceImpl implements PostService {
             post.setUserId(currentUser.getId());
             // 填充帖子内容
             BeanUtils.copyProperties(createPostDTO, post);
+            // INSERT不写这几列，保持数据库默认值，返回值才和库里一致
+            post.setCoverImage(null);
+            post.setPinned(false);
+            post.setEssence(false);
+            post.setIpAddress(null);
         }else{
             throw new BusinessException(ErrorCode.UNAUTHORIZED,"Unbelievable! 你是怎么进来的，谁让你没登录就进来的!💢 滚出去😡*");
         }
 
         // 3. 校验帖子内容时效性，为空已在Controller的@Validated里校验
         //校验分区是否存在，存在才给加帖子，不存在或者锁了的分区不可新增帖子，无论管理员与否
-        if(!categoryMapper.isActiveById(post.getCategoryId())){
+        Category category = categoryRegistry.getActive(post.getCategoryId());
+        if(category == null){
             throw new BusinessException(ErrorCode.CATEGORY_NOT_FOUND,"分区不存在或已被锁定，无法在该分区下创建帖子");
         }else{
             //分区存在，设置分区名称
-            post.setCategoryName(categoryMapper.findNameById(post.getCategoryId()));
+            post.setCategoryName(category.getName());
         }
+        // 时间在这里定好再写库，datetime只到秒
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        post.setCreateTime(now);
+        post.setUpdateTime(now);
 
         // 4. 调用Mapper插入数据库
         if(postMapper.insert(post) != 1){
             throw new BusinessException(ErrorCode.SQL_ERROR,"帖子\"" + post.getTitle() + "\"创建失败，数据库插入行数不为1");
         }
+        postContentMapper.upsert(post.getId(), post.getContent());   //正文单独一张表，列表查询不读它
+        TransactionUtil.afterCommit(() -> {
+            postCacheService.evict(post.getId());   //发帖前有人探测过这个id的话会留下空值缓存
+            postCountService.onCreate(post);
+        });
+        if(post.getStatus() == PostStatus.PUBLISHED.getStatus()){
+            postSearchService.onChanged(post.getId());
+        }
         
         log.info("用户[{}]发布了新帖子: [{}], ID: {}", currentUser.getUsername(), post.getTitle(), post.getId());
 
-        return postConverter.toDetailVO(postMapper.findById(post.getId()));
+        return postConverter.toDetailVO(post);
     }
 
     /**
@@ -93,6 +154,7 @@ public class PostServiceImpl implements PostService {
      * @return
      */
     @Override
+    @Transactional
     public PostDetailVO updatePost(Long postId, Post post) {
         // NOTE: 要调用帖子Mapper.updateTime更新时间,2.要校验前端不可信id，而校验id我认为用user_id+title，userid用Security验证，数据库里扫一遍该userid下的titile中有没有重名的帖子，没有就报错返回该帖子已不存在，有就更新家调用updateTime
         // 有没有什么快速的方法拿到Security中的userid？还是包装起来 --> 现在不包装
@@ -103,10 +165,10 @@ public class PostServiceImpl implements PostService {
         // 该校验方法优化为单点查询数据库即可，其实也不算信任，只是使用，这不是还在校验嘛，所以不算信任哦
 
         // 从Security获取当前登录用户
-        User currentUser = SecurityUtil.getCurrentUser();
+        LoginUser currentUser = SecurityUtil.getLoginUser();
         if(currentUser==null){throw new BusinessException(ErrorCode.UNAUTHORIZED,"Unbelievable! 你是怎么进来的，谁让你没登录就进来的!💢 滚出去😡*");}
 
-        // 使用前端的postId查帖子后校验帖子是否属于currentUser.getId()
+        // 使用前端的postId查帖子后校验帖子是否属于currentUser.getId()，带正文，修改后直接合并成返回值
         Post postInDb = postMapper.findById(postId);
         if(postInDb == null){
             throw new BusinessException(ErrorCode.POST_NOT_FOUND,"帖子不存在，无法修改");
@@ -124,6 +186,10 @@ public class PostServiceImpl implements PostService {
             //非管理员直接报不存在
             throw new BusinessException(ErrorCode.POST_NOT_FOUND,"帖子不存在，无法修改");
         }
+        // 草稿的自动保存缓冲里还有没写库的内容就先写库，本次修改覆盖在上面
+        if(draftService.flush(postInDb)){
+            postInDb = postMapper.findById(postId);
+        }
 
         //校验修改内容格式
         //1.验空，检查要修改的post里的Content、Title和CategoryId是否都为空，即没有要修改的内容
@@ -137,22 +203,52 @@ public class PostServiceImpl implements PostService {
         }
         //2.检查CategoryId是否存在和可用 //OK:修改categroyID后要修改categoryName
         if(post.getCategoryId() != null) { //前端传了才检查并同步修改分区名
-            //只用ForUser，因为管理员修改帖子也不能修改到禁用的分区
-            categoryService.easyCheckCategoryExistByIdForUser(post.getCategoryId(), "修改帖子时");
-            post.setCategoryName(categoryMapper.findNameById(post.getCategoryId()));
+            //只查启用的分区，因为管理员修改帖子也不能修改到禁用的分区
+            Category category = categoryRegistry.getActive(post.getCategoryId());
+            if(category == null){
+                throw new BusinessException(ErrorCode.CATEGORY_NOT_FOUND,"分区不存在或已被锁定，无法修改到该分区");
+            }
+            post.setCategoryName(category.getName());
 
         }//TODO:3.上传图片如果需要检查的话这里也要检查
 
         // 过关才允许修改
+        post.setUpdateTime(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
         if( postMapper.updatePost(postId,post) != 1){
             throw new RuntimeException("帖子 \"" + postInDb.getTitle() + "\" 修改失败，数据库修改行数不为1");
         }
-        
+        if(post.getContent() != null && !post.getContent().isBlank()){
+            postContentMapper.upsert(postId, post.getContent());
+            postContentMapper.clearPostsContent(postId);    //还没迁移的帖子，posts里的旧正文不再有用
+        }
+        Post before = new Post();   //postInDb下面会合并成修改后的样子，计数要用修改前的分区和状态
+        BeanUtils.copyProperties(postInDb, before);
+        TransactionUtil.afterCommit(() -> {
+            postCacheService.evict(postId);
+            postCountService.onCategoryChange(before, post.getCategoryId());
+        });
+
         log.info("用户[{}]修改了帖子: [{}], ID: {}", currentUser.getUsername(), postInDb.getTitle(), postId);
 
-        // 直接返回现在的post引用（X）
-        // 返回该id从posts里查出来的原文
-        return postConverter.toDetailVO(postMapper.findById(postId));
+        String oldTitle = postInDb.getTitle();
+        String oldContent = postInDb.getContent();
+        LocalDateTime oldTime = postInDb.getUpdateTime();
+        // 改动合并到修改前的帖子上返回，规则同updatePost的动态SQL：只有传了且非空的字段才改
+        if(StringUtils.hasText(post.getTitle())) postInDb.setTitle(post.getTitle());
+        if(StringUtils.hasText(post.getContent())) postInDb.setContent(post.getContent());
+        if(post.getCategoryId() != null) postInDb.setCategoryId(post.getCategoryId());
+        if(StringUtils.hasText(post.getCategoryName())) postInDb.setCategoryName(post.getCategoryName());
+        if(StringUtils.hasText(post.getSummary())) postInDb.setSummary(post.getSummary());
+        if(StringUtils.hasText(post.getCoverImage())) postInDb.setCoverImage(post.getCoverImage());
+        postInDb.setUpdateTime(post.getUpdateTime());
+        if(postInDb.getStatus() == PostStatus.PUBLISHED.getStatus()){
+            postSearchService.onChanged(postId);
+        }
+        if(postInDb.getStatus() != PostStatus.DRAFT.getStatus()){   //草稿的改动不进修订历史
+            postRevisionService.record(postId, currentUser.getId(), oldTitle, oldContent, oldTime,
+                    postInDb.getTitle(), postInDb.getContent());
+        }
+        return postConverter.toDetailVO(postInDb);
     }
 
     /**
@@ -166,8 +262,8 @@ public class PostServiceImpl implements PostService {
         // 2.调用Mapper删除
 
         // 从Security中获取
-        User currentUser = SecurityUtil.getCurrentUser();
-        Post postInDB = postMapper.findById(postId);
+        LoginUser currentUser = SecurityUtil.getLoginUser();
+        Post postInDB = postMapper.findBriefById(postId);
 
         if(postInDB == null){
             throw new BusinessException(ErrorCode.POST_NOT_FOUND,"帖子不存在，无法删除");
@@ -188,12 +284,22 @@ public class PostServiceImpl implements PostService {
                 throw new BusinessException(ErrorCode.SQL_ERROR,"帖子\"" + postInDB.getTitle() + "\"删除失败，数据库删除行数不为1");
             }
             log.warn("管理员[{}]物理删除了帖子: [{}], ID: {}", currentUser.getUsername(), postInDB.getTitle(), postId);
+            TransactionUtil.afterCommit(() -> postCountService.onDelete(postInDB));
         }else{
             //作者软删除
             if(postMapper.updateStatus(postInDB.getId(),PostStatus.DELETED.getStatus()) != 1){
                 throw new BusinessException(ErrorCode.SQL_ERROR,"帖子\"" + postInDB.getTitle() + "\"删除失败，数据库更新行数不为1");
             }
             log.info("用户[{}]软删除了帖子: [{}], ID: {}", currentUser.getUsername(), postInDB.getTitle(), postId);
+            TransactionUtil.afterCommit(() -> postCountService.onStatusChange(postInDB, PostStatus.DELETED.getStatus()));
+        }
+        TransactionUtil.afterCommit(() -> {
+            postCacheService.evict(postId);
+            hotPostService.remove(postId);
+            draftService.discard(postInDB);
+        });
+        if(postInDB.getStatus() == PostStatus.PUBLISHED.getStatus()){
+            postSearchService.onChanged(postId);
         }
 
     }
@@ -205,8 +311,25 @@ public class PostServiceImpl implements PostService {
      */
     @Override
     public void setPostStatus(Long postId, int status) {
-        if(postMapper.isExistById(postId)){
-            postMapper.updateStatus(postId,status);
+        Post postInDb = postMapper.findBriefById(postId);    //计数要用原状态
+        if(postInDb != null){
+            if(postMapper.updateStatus(postId,status) != 1){
+                //删除超过保留期、已被物理删除任务认领的帖子不能再恢复
+                throw new BusinessException(ErrorCode.POST_ALREADY_DELETED,"帖子正在被物理删除，无法修改状态");
+            }
+            TransactionUtil.afterCommit(() -> {
+                postCacheService.evict(postId);
+                postCountService.onStatusChange(postInDb, status);
+                if(status != PostStatus.PUBLISHED.getStatus()){
+                    hotPostService.remove(postId);  //重新发布的帖子等下次热榜重算再进榜
+                }
+                if(status != postInDb.getStatus()){
+                    draftService.discard(postInDb);
+                }
+            });
+            if(status == PostStatus.PUBLISHED.getStatus() || postInDb.getStatus() == PostStatus.PUBLISHED.getStatus()){
+                postSearchService.onChanged(postId);
+            }
             // 虽然这里拿不到当前操作用户，但这种管理操作通常建议记录
             log.info("帖子ID:[{}] 状态变更为: {}", postId, status);
         }else{
@@ -222,30 +345,20 @@ public class PostServiceImpl implements PostService {
      */
     @Override
     public PostDetailVO getPostById(Long postId) {
-        Post postInDb = postMapper.findById(postId);
+        // 走详情缓存，缓存的帖子对所有人一样，下面仍按当前用户判断可见性
+        Post postInDb = postCacheService.getById(postId);
         if(postInDb == null){
             throw new BusinessException(ErrorCode.POST_NOT_FOUND);
         }
         // 权限控制：非公开状态（如1审核中，3已拒绝），只有作者和管理员能看；软删除状态（4已删除）只有管理员能看
         if(postInDb.getStatus() != PostStatus.PUBLISHED.getStatus()){
-            User currentUser = SecurityUtil.getCurrentUser();
-            //对于未登录用户，直接不允许看到非公开状态帖子
-            if(currentUser == null){
-                throw new BusinessException(ErrorCode.POST_NOT_FOUND);
-            }
-            boolean isAdmin = currentUser.getRole().equals(UserRole.ADMIN.getRoleName());
-            boolean isAuthor = currentUser.getId().equals(postInDb.getUserId());
-            //0草稿：拦截非作者和管理员,只有作者能看
-            if(postInDb.getStatus() == PostStatus.DRAFT.getStatus() && !isAuthor ){
-                throw new BusinessException(ErrorCode.POST_NOT_FOUND);
-            }
-            //4软删除：拦截非管理员，只有管理员能看
-            if(postInDb.getStatus() == PostStatus.DELETED.getStatus() && !isAdmin){
+            if(!canView(postInDb, SecurityUtil.getLoginUser())){
+                //亮点：隐蔽式拒绝。对于无权访问的资源，报404而不是403，防止恶意用户通过ID遍历探测哪些ID是存在的
                 throw new BusinessException(ErrorCode.POST_NOT_FOUND);
             }
-            //1审核中和3已拒绝：拦截非作者和非管理员
-            if(!isAdmin && !isAuthor){
-                //亮点：隐蔽式拒绝。对于无权访问的资源，报404而不是403，防止恶意用户通过ID遍历探测哪些ID是存在的
+            //有权查看，不可见帖子的缓存只有状态没有正文，回源取完整帖子
+            postInDb = postCacheService.getFullById(postInDb);
+            if(postInDb == null){
                 throw new BusinessException(ErrorCode.POST_NOT_FOUND);
             }
         }
@@ -253,27 +366,91 @@ public class PostServiceImpl implements PostService {
 //            //公开状态，去除status字段返回
 //            postInDb.setStatus(114514); //随便一个前端不认识的数字，表示公开状态
 //        }
+        // 浏览量只在内存里记一笔，定时合并写库，不在读请求里UPDATE热点行
+        postViewCounter.record(postId);
+        uniqueVisitorService.record(postId, postInDb.getCategoryId());
+        hotPostService.onView(postInDb);
         return postConverter.toDetailVO(postInDb);
     }
 
+    /**
+     * 批量获取帖子详情，可见性规则同getPostById，无权查看和不存在的直接跳过
+     * 命中详情缓存的一次MGET取回，未命中的一条IN查询回源；不计浏览量
+     * @param postIds 帖子id列表，最多100个
+     * @return 帖子详情列表，顺序同postIds，重复的id只返回一次
+     */
+    @Override
+    public List<PostDetailVO> getPostsByIds(List<Long> postIds) {
+        if(postIds.size() > 100){
+            throw new BusinessException(ErrorCode.PARAM_ERROR,"一次最多查询100个帖子");
+        }
+        Map<Long, Post> posts = postCacheService.getByIds(postIds);
+        LoginUser currentUser = SecurityUtil.getLoginUser();
+        //有权查看的非公开帖子，缓存里只有标记没有正文，一起回源
+        List<Post> needFull = posts.values().stream()
+                .filter(post -> post.getStatus() != PostStatus.PUBLISHED.getStatus() && canView(post, currentUser))
+                .toList();
+        Map<Long, Post> fullPosts = postCacheService.getFullByIds(needFull);
+
+        List<PostDetailVO> result = new ArrayList<>(posts.size());
+        for(Long postId : new LinkedHashSet<>(postIds)){
+            Post post = posts.get(postId);
+            if(post != null && post.getStatus() != PostStatus.PUBLISHED.getStatus()){
+                post = fullPosts.get(postId);   //无权查看的不在fullPosts里
+            }
+            if(post != null){
+                result.add(postConverter.toDetailVO(post));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 非公开帖子的可见性：0草稿只有作者能看；4软删除只有管理员能看；1审核中和3已拒绝作者和管理员能看
+     * @param post 帖子，至少带userId和status
+     * @param currentUser 当前用户，未登录为null
+     * @return 是否有权查看
+     */
+    private static boolean canView(Post post, LoginUser currentUser){
+        if(post.getStatus() == PostStatus.PUBLISHED.getStatus()){
+            return true;
+        }
+        //对于未登录用户，直接不允许看到非公开状态帖子
+        if(currentUser == null){
+            return false;
+        }
+        boolean isAdmin = currentUser.getRole().equals(UserRole.ADMIN.getRoleName());
+        boolean isAuthor = currentUser.getId().equals(post.getUserId());
+        if(post.getStatus() == PostStatus.DRAFT.getStatus()){
+            return isAuthor;
+        }
+        if(post.getStatus() == PostStatus.DELETED.getStatus()){
+            return isAdmin;
+        }
+        return isAdmin || isAuthor;
+    }
+
 
     /**
-     * 分页获取帖子已发布的概要列表，Mapper已经LeftJoin和过滤状态
+     * 分页获取帖子已发布的概要列表，Mapper已经过滤状态，作者信息由UserSummaryLoader批量填充
+     * 总数取计数服务，不让PageHelper每页都COUNT(*)，计数不可用时才回退COUNT
      * @param pageable
+     * @param count false时不查总数，total返回null
      * @return
      */
     @Override
-    public PageResult pagePostSummary(Pageable pageable) {
-        PageHelper.startPage(pageable.getPageNumber()+1,pageable.getPageSize());
+    public PageResult pagePostSummary(Pageable pageable, boolean count) {
+        Long total = count ? postCountService.countPublished() : null;
+        PageHelper.startPage(pageable.getPageNumber()+1,pageable.getPageSize(), count && total == null);
         // 传入已发布状态码 (2)
         Page<PostSummaryVO> voPage = postMapper.getPostsByPage(PostStatus.PUBLISHED.getStatus());
-        return new PageResult(voPage.getTotal(),voPage.getResult());
+        return new PageResult(count && total == null ? voPage.getTotal() : total, userSummaryLoader.fillAuthors(voPage.getResult()));
     }
 
     /**
      * 分页获取某用户的帖子概要列表
      * 会检查用户状态限制是否被封禁
-     * 查的都是SummaryVO，用于用户主页展示帖子列表，所以没填userId字段
+     * 查的都是SummaryVO，用于用户主页展示帖子列表
      * -正常用户都能获取
      * //多给mapper传参动态sql区分非用户本身和用户自己和管理员身份
      * 一共三种状态，游客和普通用户只能看已发布的，作者能看除已删除外的所有自己的帖子，管理员能看所有帖
@@ -282,10 +459,10 @@ public class PostServiceImpl implements PostService {
      * TODO:后期细化三种角色，现在先用简陋的if-else实现，到时候搞个状态机好了，🤮😅
      * @param userId
      * @param pageable
-     * @return PageResult(total, List<PostSummaryVO>)，SummaryVO但是不返回用户名和url
+     * @return PageResult(total, List<PostSummaryVO>)
      */ //OK:本接口三状态已实现，正常功能完工
     @Override
-    public PageResult pagePostsByUserId(Long userId, Pageable pageable) {
+    public PageResult pagePostsByUserId(Long userId, Pageable pageable, boolean count) {
 
         //校验要查找的用户是否存在和状态是否被封禁
         User userInDb = userService.getUserById(userId); //找不到会抛异常
@@ -294,16 +471,18 @@ public class PostServiceImpl implements PostService {
         }
         //检查发起询问的管理员与否,同时允许未登录用户依照非管理员身份查询
         boolean isAdmin = false,isAuthor = false;
-        User currentUser = SecurityUtil.getCurrentUser();
+        LoginUser currentUser = SecurityUtil.getLoginUser();
         if(currentUser != null){
             isAdmin = UserRole.ADMIN.getRoleName().equals(currentUser.getRole());//更安全的equals
             isAuthor = userId.equals(currentUser.getId());
         }
 
+        // 总数取计数服务，不可用时才让PageHelper COUNT
+        Long total = count ? postCountService.countByUser(userId, isAdmin, isAuthor) : null;
         // 使用PageHelper进行分页
-        PageHelper.startPage(pageable.getPageNumber()+1, pageable.getPageSize());//记得+1，因为PageHelper是1-base,Pageable是0-base
+        PageHelper.startPage(pageable.getPageNumber()+1, pageable.getPageSize(), count && total == null);//记得+1，因为PageHelper是1-base,Pageable是0-base
         Page<PostSummaryVO> page = postMapper.findPostsByUserId(userId,isAdmin,isAuthor);
-        return new PageResult(page.getTotal(),page.getResult());
+        return new PageResult(count && total == null ? page.getTotal() : total, userSummaryLoader.fillAuthors(page.getResult()));
     }
 
     /**
@@ -316,6 +495,92 @@ public class PostServiceImpl implements PostService {
     public List<PostSummaryVO> getPostsByCursor(Long cursor, int size) {
         // 限制每页最大数量，防止恶意请求
         if(size > 100) size = 100;
-        return postMapper.getPostsByCursor(cursor, size);
+        return userSummaryLoader.fillAuthors(postMapper.getPostsByCursor(cursor, size));
+    }
+
+    /**
+     * 游标分页获取已发布帖子，按(修改时间, id)倒序
+     * 不像OFFSET要扫描并丢弃前面的行，第1页和第10000页一样快；
+     * 翻页期间有帖子被修改只会跳到列表最前面，不会让后面的页重复或漏掉其他帖子
+     */
+    @Override
+    public CursorPageResult<PostSummaryVO> seekPostSummary(String cursor, int size) {
+        size = Math.min(size, 100);
+        CursorUtil.TimeCursor timeCursor = CursorUtil.decodeTime(cursor);
+        // 多查一条判断是否还有下一页
+        List<PostSummaryVO> rows = postMapper.seekPostsByStatus(PostStatus.PUBLISHED.getStatus(),
+                timeCursor == null ? null : timeCursor.updateTime(),
+                timeCursor == null ? null : timeCursor.id(),
+                size + 1);
+        return toTimeCursorPage(rows, size);
+    }
+
+    /**
+     * 游标分页获取某用户的帖子，身份判断同pagePostsByUserId
+     */
+    @Override
+    public CursorPageResult<PostSummaryVO> seekPostsByUserId(Long userId, String cursor, int size) {
+        User userInDb = userService.getUserById(userId); //找不到会抛异常
+        if(userInDb.isBanned()){
+            throw new BusinessException(ErrorCode.USER_BANNED,"该用户已被封禁，无法获取其帖子列表");
+        }
+        boolean isAdmin = false,isAuthor = false;
+        LoginUser currentUser = SecurityUtil.getLoginUser();
+        if(currentUser != null){
+            isAdmin = UserRole.ADMIN.getRoleName().equals(currentUser.getRole());
+            isAuthor = userId.equals(currentUser.getId());
+        }
+        size = Math.min(size, 100);
+        CursorUtil.TimeCursor timeCursor = CursorUtil.decodeTime(cursor);
+        List<PostSummaryVO> rows = postMapper.seekPostsByUserId(userId, isAdmin, isAuthor,
+                timeCursor == null ? null : timeCursor.updateTime(),
+                timeCursor == null ? null : timeCursor.id(),
+                size + 1);
+        return toTimeCursorPage(rows, size);
+    }
+
+    /**
+     * 游标分页获取分区下已发布的帖子，置顶的在前，其余按id倒序
+     */
+    @Override
+    public CursorPageResult<PostSummaryVO> seekPostsByCategoryId(Long categoryId, String cursor, int size) {
+        if(categoryRegistry.getActive(categoryId) == null){
+            throw new BusinessException(ErrorCode.CATEGORY_NOT_FOUND);
+        }
+        size = Math.min(size, 100);
+        CursorUtil.CategoryCursor categoryCursor = CursorUtil.decodeCategory(cursor, categoryId);
+        List<PostSummaryVO> rows = categoryCursor == null
+                ? postMapper.seekPostsByCategoryId(categoryId, false, null, size + 1)
+                : postMapper.seekPostsByCategoryId(categoryId, categoryCursor.pinned(), categoryCursor.id(), size + 1);
+        boolean hasMore = rows.size() > size;
+        if(hasMore){
+            rows = rows.subList(0, size);
+        }
+        PostSummaryVO last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        String nextCursor = hasMore ? CursorUtil.encodeCategory(categoryId, last.isPinned(), last.getId()) : null;
+        return new CursorPageResult<>(userSummaryLoader.fillAuthors(rows), nextCursor, hasMore);
+    }
+
+    // 多查的一条只用来判断hasMore，游标取本页最后一条
+    private CursorPageResult<PostSummaryVO> toTimeCursorPage(List<PostSummaryVO> rows, int size) {
+        boolean hasMore = rows.size() > size;
+        if(hasMore){
+            rows = rows.subList(0, size);
+        }
+        String nextCursor = null;
+        if(hasMore){
+            PostSummaryVO last = rows.get(rows.size() - 1);
+            nextCursor = CursorUtil.encodeTime(last.getUpdateTime(), last.getId());
+        }
+        return new CursorPageResult<>(userSummaryLoader.fillAuthors(rows), nextCursor, hasMore);
+    }
+
+    /**
+     * 热门帖子，id从Redis热榜ZSET按分页取，概要走本地缓存，不在每次请求里按热度排序查库
+     */
+    @Override
+    public List<PostSummaryVO> getHotPosts(int page, int size) {
+        size = Math.min(size, 100);
+        return userSummaryLoader.fillAuthors(hotPostService.getHotPosts(page, size));
     }
 }
@@ -2,19 +2,30 @@ package com.liu.springbootdemo.service.impl;
 
 import com.liu.springbootdemo.POJO.dto.user.RegisterDTO;
 import com.liu.springbootdemo.POJO.dto.user.UpdateUserDTO;
+import com.liu.springbootdemo.POJO.vo.AvailabilityVO;
 import com.liu.springbootdemo.POJO.vo.LoginResponseVO;
 import com.liu.springbootdemo.POJO.entity.User;
 import com.liu.springbootdemo.POJO.vo.UpdateUserVO;
+import com.liu.springbootdemo.common.annotation.RateLimited;
 import com.liu.springbootdemo.common.enums.ErrorCode;
 import com.liu.springbootdemo.common.enums.FileType;
+import com.liu.springbootdemo.common.enums.LimitDimension;
+import com.liu.springbootdemo.common.enums.UserRole;
 import com.liu.springbootdemo.common.enums.VERCODE;
 import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.security.LoginUser;
 import com.liu.springbootdemo.common.utils.FileUtil;
+import com.liu.springbootdemo.common.utils.IpUtil;
 import com.liu.springbootdemo.config.MinioConfig;
 import com.liu.springbootdemo.converter.UserConverter;
 import com.liu.springbootdemo.mapper.UserMapper;
 import com.liu.springbootdemo.service.EmailService;
+import com.liu.springbootdemo.service.LoginTimeRecorder;
 import com.liu.springbootdemo.service.MinioService;
+import com.liu.springbootdemo.service.PasswordHashService;
+import com.liu.springbootdemo.service.TokenVersionService;
+import com.liu.springbootdemo.service.UserCacheService;
+import com.liu.springbootdemo.service.UserExistenceFilter;
 import com.liu.springbootdemo.service.UserService;
 import com.liu.springbootdemo.common.utils.JwtUtil;
 import com.liu.springbootdemo.common.utils.SecurityUtil;
@@ -22,34 +33,45 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 public class UserServiceImpl implements UserService, UserDetailsService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
+    // 15分钟内最多尝试登录的次数
+    private static final int MAX_LOGIN_ATTEMPTS = 5;
 
     @Autowired  //关键注解：自动注入UserMapper实例，我们可以直接使用了
     private UserMapper userMapper;
-    @Autowired  //注入密码加密器
-    private PasswordEncoder passwordEncoder;
+    @Autowired  //密码哈希走独立线程池，不占请求线程
+    private PasswordHashService passwordHashService;
     @Autowired
     private JwtUtil jwtUtil;
     @Autowired
-    private RedisTemplate<String,Object> redisTemplate;
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired  //检查锁定+占用尝试次数的原子脚本，登录失败计数用
+    private RedisScript<Long> loginAttemptScript;
+    @Autowired  //验证码签发脚本
+    private RedisScript<Long> issueCodeScript;
     @Autowired
     private EmailService emailService;
     @Autowired
@@ -58,20 +80,25 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private MinioConfig minioConfig;
     @Autowired
     private UserConverter userConverter;
+    @Autowired
+    private TokenVersionService tokenVersionService;
+    @Autowired
+    private UserCacheService userCacheService;
+    @Autowired
+    private LoginTimeRecorder loginTimeRecorder;
+    @Autowired  //用户名/邮箱存在性判断，先过布隆过滤器
+    private UserExistenceFilter userExistenceFilter;
 
     // 现在注册时检查邮邮箱登录吧，邮箱只是作为用户信息吧，之后注册应该也不用邮箱，这个接口是为了用户填写邮箱信息的吧，也可以换成手机号验证
     @Override
     public void register(RegisterDTO registerDTO) {
 
-        // 1. 业务逻辑：检查用户名是否已经存在，返回null即为没有该用户，允许注册
-        User userByUsername = userMapper.findByUsername(registerDTO.getUsername());
-        User userByEmail = userMapper.findByEmail(registerDTO.getEmail());
-        // 已有用户
-        if(userByUsername != null){
+        // 1. 业务逻辑：检查用户名是否已经存在，布隆过滤器说不存在的不查库
+        if(userExistenceFilter.usernameExists(registerDTO.getUsername())){
             // 用户已存在，抛出异常（后续全局异常处理）
             throw new BusinessException(ErrorCode.USERNAME_EXISTS);
         }
-        if(userByEmail != null){
+        if(userExistenceFilter.emailExists(registerDTO.getEmail())){
            throw new BusinessException(ErrorCode.EMAIL_EXISTS);
         }
         if(registerDTO.getPassword().length()<6 ){
@@ -79,35 +106,64 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
 
         //2. 验证码是否在redis中存在且正确，验证通过后删除验证码,GOOD:使用Redis存储验证码，避免了数据库的读写压力，同时设置过期时间提高安全性
-        String redisKey = VERCODE.REGISTER.getRedisKey() + registerDTO.getEmail();
-        Object redisCode = redisTemplate.opsForValue().get(redisKey);
+        String redisKey = VERCODE.REGISTER.getRedisKey() + normalizeEmail(registerDTO.getEmail());
+        String redisCode = stringRedisTemplate.opsForValue().get(redisKey);
         if(redisCode == null){// 验证码过期
             throw new BusinessException(ErrorCode.VERIFICATION_CODE_EXPIRED);
         }else if(!redisCode.equals(registerDTO.getVerCode())){// 验证码错误
             throw new BusinessException(ErrorCode.VERIFICATION_CODE_ERROR);
         }else{// 验证码正确，删除验证码
-            redisTemplate.delete(redisKey);
+            stringRedisTemplate.delete(redisKey);
         }
 
         // 2. 加密
         // user.setPassword(encode(user.getPassword()));
         // 将密码加密并存入user对象
-        registerDTO.setPassword(passwordEncoder.encode(registerDTO.getPassword()));
+        registerDTO.setPassword(passwordHashService.encode(registerDTO.getPassword()));
         // 3. 调用Mapper层，将数据写入数据库
-        userMapper.insert(userConverter.registerDtoToUser(registerDTO));
+        try {
+            userMapper.insert(userConverter.registerDtoToUser(registerDTO));
+        } catch (DuplicateKeyException e) {
+            // 并发注册或其他实例的过滤器新增还没同步过来，由唯一索引兜底
+            userExistenceFilter.add(registerDTO.getUsername(), registerDTO.getEmail());
+            // 驱动报错形如 Duplicate entry 'xx' for key 'users.email'
+            String duplicateKey = String.valueOf(e.getMostSpecificCause().getMessage());
+            throw new BusinessException(duplicateKey.endsWith("email'")
+                    ? ErrorCode.EMAIL_EXISTS : ErrorCode.USERNAME_EXISTS);
+        }
+        userExistenceFilter.add(registerDTO.getUsername(), registerDTO.getEmail());
+    }
+
+    /**
+     * 注册前检查用户名/邮箱是否可用，布隆过滤器说不存在的直接返回，不查库
+     * @param username 用户名，可为空
+     * @param email 邮箱，可为空
+     * @return 各项是否可用，未传的项为null
+     */
+    @Override
+    @RateLimited(name = "availability", dimension = LimitDimension.IP, permits = 30, window = 60)
+    public AvailabilityVO checkAvailability(String username, String email) {
+        AvailabilityVO availabilityVO = new AvailabilityVO();
+        if(StringUtils.hasText(username)){
+            availabilityVO.setUsernameAvailable(!userExistenceFilter.usernameExists(username));
+        }
+        if(StringUtils.hasText(email)){
+            availabilityVO.setEmailAvailable(!userExistenceFilter.emailExists(email));
+        }
+        return availabilityVO;
     }
 
     @Override
+    @RateLimited(name = "login", dimension = LimitDimension.IP, permits = 20, window = 60)
+    @RateLimited(name = "login", dimension = LimitDimension.PARAM, key = "#usernameOrEmail", permits = 10, window = 60)
     public LoginResponseVO login(String usernameOrEmail, String password) {
         // 登录后逻辑
-        User userInDbByUsername = userMapper.findByUsername(usernameOrEmail);
-        User userInDbByEmail = userMapper.findByEmail(usernameOrEmail);
+        // 一条语句按用户名或邮箱查，用户名优先
+        User userInDb = userMapper.findByUsernameOrEmail(usernameOrEmail);
         // 1. 用户不存在或密码错误
-        if((userInDbByUsername == null && userInDbByEmail == null)){
+        if(userInDb == null){
             throw new BusinessException(ErrorCode.ACCOUNT_NOT_FOUND,"用户名/邮箱未注册，请注册后重试");
         }
-        // 这里已经保证了userInDbByUsername和userInDbByEmail至少有一个不为null
-        User userInDb = (userInDbByUsername==null?userInDbByEmail:userInDbByUsername);
         
         //user存在，如果被封禁则遣返
         if(userInDb.isBanned()){
@@ -116,35 +172,31 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
         //GOOD:Redis实现尝试登录次数限制和记录
         String failKey = "login:fail:"+userInDb.getId().toString();
-        //先查是否已经锁定
-        Integer failCount = (Integer) redisTemplate.opsForValue().get(failKey);
-        if(failCount != null && failCount >= 5){
-            long expire = redisTemplate.getExpire(failKey, TimeUnit.MINUTES);
-            throw new BusinessException(ErrorCode.FAILED_LOGIN_ATTEMPTS_EXCEEDED,"账号锁定，请等待"+(expire+1)+"分钟");
+        //锁定检查和占用一次尝试机会在一个脚本里原子完成，并发的错误密码请求不会都绕过上限
+        //首次尝试才开始计时15分钟，防止隔天多记；登录成功后清零
+        Long attempt = stringRedisTemplate.execute(loginAttemptScript, List.of(failKey),
+                String.valueOf(MAX_LOGIN_ATTEMPTS), String.valueOf(TimeUnit.MINUTES.toSeconds(15)));
+        if(attempt != null && attempt < 0){
+            throw new BusinessException(ErrorCode.FAILED_LOGIN_ATTEMPTS_EXCEEDED,"账号锁定，请等待"+((-attempt + 59) / 60)+"分钟");
         }
         //再验证密码正确性
-        if(!passwordEncoder.matches(password,userInDb.getPassword())){
-            long count = redisTemplate.opsForValue().increment(failKey);
-            if(count == 1){
-                redisTemplate.expire(failKey, 15, TimeUnit.MINUTES);//首次输错才开始计时15分钟，防止隔天多记
-            }
-            throw new BusinessException(ErrorCode.WRONG_PASSWORD, "密码错误，还剩 " + (5 - count)+ " 次机会");
+        if(!passwordHashService.matches(password,userInDb.getPassword())){
+            long remaining = attempt == null ? 0 : MAX_LOGIN_ATTEMPTS - attempt;
+            throw new BusinessException(ErrorCode.WRONG_PASSWORD, "密码错误，还剩 " + remaining + " 次机会");
         }
 
 
-        // 更新登录数据，同时捕获数据库更新异常
-        if (userMapper.updateLogintimeByUsername(userInDb.getUsername()) != 1) {
-            // 如果还能走这里，那就是数据库更新失败
-            logger.warn("为用户 {} 更新登录时间失败", usernameOrEmail);
-            throw new BusinessException(ErrorCode.USER_UPDATE_FAILED,"用户 " + usernameOrEmail+ "更新最新登录时间失败，数据库无报错但返回行数不为1");
-        }
-        // 构造Spring Security的UserDetails对象
-        UserDetails userDetails = loadUserByUsername(userInDb.getUsername());
+        // BCrypt的cost配置变了则后台按新cost重新哈希
+        passwordHashService.rehashIfNeeded(userInDb.getId(), password, userInDb.getPassword());
+        // 记录登录时间，内存里合并后定时批量写回，不在登录请求里同步写库
+        loginTimeRecorder.record(userInDb.getId());
+        // 直接用查出来的用户构造认证主体，不再回表
+        UserDetails userDetails = LoginUser.from(userInDb);
         // 生成Token：将UserDetails传给JwtUtil实现
         String token = jwtUtil.generateToken(userDetails);
 
         //登录成功洗白Redis记录
-        redisTemplate.delete(failKey);
+        stringRedisTemplate.delete(failKey);
 
         // 创建返回体
         return new LoginResponseVO(userInDb.getUsername(),token);
@@ -157,16 +209,21 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @param email
      */
     @Override
+    @RateLimited(name = "register-code", dimension = LimitDimension.IP, permits = 10, window = 1, unit = TimeUnit.HOURS,
+            errorCode = ErrorCode.VERIFICATION_CODE_SEND_FREQUENT)
+    @RateLimited(name = "register-code", dimension = LimitDimension.PARAM, key = "#email?.trim()?.toLowerCase(T(java.util.Locale).ROOT)", permits = 5, window = 1, unit = TimeUnit.HOURS,
+            errorCode = ErrorCode.VERIFICATION_CODE_SEND_FREQUENT)
     public void sendRegisterCode(String email) {
-        User userByEmail = userMapper.findByEmail(email);
-        if(userByEmail != null){
+        if(userExistenceFilter.emailExists(email)){
             throw new BusinessException(ErrorCode.EMAIL_EXISTS);
         }
         sendVerificationCode(email, VERCODE.REGISTER.getCodeType());
     }
 
-    private static final String EMAIL_REGEX =
-            "^[A-Za-z0-9]+([_\\-\\.][A-Za-z0-9]+)*@[A-Za-z0-9]+([\\-\\.][A-Za-z0-9]+)*\\.[A-Za-z]{2,}$";
+    // 预编译，避免每次String.matches都重新编译正则
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(
+            "^[A-Za-z0-9]+([_\\-\\.][A-Za-z0-9]+)*@[A-Za-z0-9]+([\\-\\.][A-Za-z0-9]+)*\\.[A-Za-z]{2,}$");
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
     /**
      * 发送邮箱验证码，通用带参版
      * @param email
@@ -174,23 +231,58 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      */
     @Override
     public void sendVerificationCode(String email, String mailType) {
-        //检查redis中是否存在未过期的验证码
-        String redisKey = VERCODE.REGISTER.getRedisKey() + email;
-        if(redisTemplate.opsForValue().get(redisKey) != null){
-            //获取验证码剩余过期时间
-            Long expire = redisTemplate.getExpire(redisKey, TimeUnit.SECONDS);
-            logger.warn("邮箱 {} 的验证码未过期，剩余 {} 秒", email, expire);
-            throw new BusinessException(ErrorCode.INPUT_INVALID, "验证码已发送，请稍后再试");
+        VERCODE vercode = VERCODE.fromCodeType(mailType);
+        if(vercode == null){
+            throw new BusinessException(ErrorCode.PARAM_ERROR, "未知的验证码类型：" + mailType);
         }
         // 校验邮箱格式->也可以限制邮箱类型，禁掉临时邮箱等
-        if(!email.matches(EMAIL_REGEX)){
+        email = normalizeEmail(email);  //大小写不同是同一个邮箱，冷却和日上限要算在一起
+        if(email == null || !EMAIL_PATTERN.matcher(email).matches()){
             throw new BusinessException(ErrorCode.EMAIL_INVALID);
         }
-        // 生成验证码并发送
+        // 一个脚本原子完成：日上限检查、冷却期SET NX抢占、写入验证码、计数，并发请求只有一个能抢到
+        String namespace = vercode.getRedisKey();
+        String day = LocalDate.now().format(DAY_FORMATTER);
+        List<String> keys = new ArrayList<>(List.of(
+                namespace + email,
+                namespace + "cooldown:" + email,
+                namespace + "daily:email:" + email + ":" + day));
+        String ip = IpUtil.getCurrentClientIp();
+        if(ip != null){
+            keys.add(namespace + "daily:ip:" + ip + ":" + day);
+        }
         String code = emailService.generateVerificationCode();
-        emailService.sendCode(email,code,mailType);
-        // 将验证码存入Redis，设置10分钟过期时间
-        redisTemplate.opsForValue().set(redisKey, code, VERCODE.REGISTER.getTimeoutMinutes(), TimeUnit.MINUTES);
+        Long result = stringRedisTemplate.execute(issueCodeScript, keys,
+                code,
+                String.valueOf(TimeUnit.MINUTES.toSeconds(vercode.getTimeoutMinutes())),
+                String.valueOf(vercode.getCooldownSeconds()),
+                String.valueOf(vercode.getDailyLimitPerEmail()),
+                String.valueOf(vercode.getDailyLimitPerIp()),
+                String.valueOf(TimeUnit.DAYS.toSeconds(1) + 3600));   //当日计数多留1小时，跨零点的时差也够用
+        if(result == null){
+            throw new BusinessException(ErrorCode.VERIFICATION_CODE_SEND_ERROR);
+        }
+        if(result != 0){
+            logger.warn("邮箱 {} 的{}验证码未签发，脚本返回 {}", email, vercode.getCodeType(), result);
+            if(result == -1){
+                throw new BusinessException(ErrorCode.VERIFICATION_CODE_SEND_FREQUENT, "该邮箱今日验证码发送次数已达上限");
+            }
+            if(result == -2){
+                throw new BusinessException(ErrorCode.VERIFICATION_CODE_SEND_FREQUENT, "今日验证码发送次数已达上限");
+            }
+            throw new BusinessException(ErrorCode.VERIFICATION_CODE_SEND_FREQUENT, "验证码已发送，请" + result + "秒后再试");
+        }
+        // 抢到key后才发邮件
+        emailService.sendCode(email, code, vercode.getCodeType());
+    }
+
+    /**
+     * 邮箱统一成去空格的小写，用于验证码、冷却和日上限的key
+     * @param email 原始邮箱
+     * @return 规范化的邮箱，null原样返回
+     */
+    private static String normalizeEmail(String email){
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -209,7 +301,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      */
     @Override
     public User getUserById(Long id){
-        User user = userMapper.findById(id);
+        User user = userCacheService.getById(id);   //走缓存，不含密码
         if(user == null){
             throw new BusinessException(ErrorCode.USER_NOT_FOUND);
         }
@@ -224,16 +316,19 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     @Override
     public UpdateUserVO updateUser(UpdateUserDTO updateUserDTO) {//TODO:之后的更新用户信息时注意contorller层不给传入avatar，因为正常流程这个avatar是由专门的更新头像接口更新的，得拦截
         //获取当前用户
-        User currentUser = SecurityUtil.getCurrentUser();
-        if(currentUser == null){//未登录或登录已过期
+        Long currentUserId = SecurityUtil.getCurrentUserId();   //只要id，直接取Token里的，不查库
+        if(currentUserId == null){//未登录或登录已过期
             throw new BusinessException(ErrorCode.UNAUTHORIZED,"Unbelievable! 你是怎么进来的，谁让你没登录就进来的!💢 滚出去😡*");
         }
         //内容校验？目前都在DTO@Vailded完了
         User user = userConverter.UpdateDtoTOUser(updateUserDTO);
-        user.setId(currentUser.getId());
+        user.setId(currentUserId);
         //更新去Mapper
         userMapper.updateUser(user);
-        return userConverter.ToUpdateVO(userMapper.findById(currentUser.getId()));
+        userExistenceFilter.add(user.getUsername(), null);    //改了用户名则加入过滤器，旧名等定时重建移出
+        userCacheService.evict(currentUserId);
+        SecurityUtil.clearCurrentUser();    //本请求内已加载的用户信息过期了
+        return userConverter.ToUpdateVO(userMapper.findById(currentUserId));
     }
 
     /**
@@ -247,7 +342,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         //1.上传文件拿到objectName
         //2.用objectName获取url
         //3.存到user里更新avatarUrl字段
-        User currentUser = SecurityUtil.getCurrentUser();
+        User currentUser = SecurityUtil.getCurrentUser();   //要旧头像地址，需要完整用户信息
         if(currentUser == null){//未登录或登录已过期
             throw new BusinessException(ErrorCode.UNAUTHORIZED,"Unbelievable! 你是怎么进来的，谁让你没登录就进来的!💢 滚出去😡*");
         }
@@ -286,31 +381,70 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         if(userMapper.deleteById(id)!=1){
             throw new BusinessException(ErrorCode.USER_DELETE_FAILED);
         }
+        // 用户已不存在，清掉Token版本缓存让其Token立即失效
+        tokenVersionService.evict(id);
+        userCacheService.evict(id);
+    }
+
+    /**
+     * 管理员封禁用户，封禁后该用户已签发的Token全部失效
+     * @param id 用户id
+     * @param banReason 封禁原因
+     * @param banUntil 封禁截止时间，可为空
+     */
+    @Override
+    public void banUser(Long id, String banReason, LocalDateTime banUntil) {
+        if(userMapper.updateBanStatus(id, true, banReason, banUntil) != 1){
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+        }
+        tokenVersionService.bump(id);
+        userCacheService.evict(id);
+        log.info("用户{}被封禁，原因：{}，截止：{}", id, banReason, banUntil);
+    }
+
+    /**
+     * 管理员解封用户
+     * @param id 用户id
+     */
+    @Override
+    public void unbanUser(Long id) {
+        if(userMapper.updateBanStatus(id, false, null, null) != 1){
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+        }
+        userCacheService.evict(id);
+        log.info("用户{}已解封", id);
+    }
+
+    /**
+     * 管理员修改用户角色，修改后旧Token里的角色作废，需重新登录
+     * @param id 用户id
+     * @param role 新角色
+     */
+    @Override
+    public void changeRole(Long id, UserRole role) {
+        if(userMapper.updateRole(id, role.getRoleName()) != 1){
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+        }
+        tokenVersionService.bump(id);
+        userCacheService.evict(id);
+        log.info("用户{}的角色变更为{}", id, role.getRoleName());
     }
 
 
     @Override   //授权用
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // 去数据库查用户在不在
-        User myUser = userMapper.findByUsername(username);
+        // 查用户在不在，走用户缓存(不含密码，密码校验在login里直接查库)
+        User myUser = userCacheService.getByUsername(username);
 
         //b. 如果用户不存在，必须抛出此异常，Spring Security会捕获它并认为认证失败
         if(myUser == null){
             throw new UsernameNotFoundException("用户 " + username + " 不存在");
         }
 
-        //用户权限列表，是为了应对单用户多角色的情况。如果真的多角色，数据库要变成user表、role表、user_role中间表这种多对多关系的表结构，然后getRole()要连接表查询返回用户角色列表，本函数中要循环读取用户的多个角色并添加到authorities列表中
-        List<GrantedAuthority> authorities = new ArrayList<>();
-        //读取用户角色，并转换为SimpleGrantedAuthority对象添加到权限列表中
-        authorities.add(new SimpleGrantedAuthority(myUser.getRole()));
-
         //c. 如果用户存在，将其转换为Spring Security需要的UserDetails对象返回
-        return new org.springframework.security.core.userdetails.User(
-                myUser.getUsername(),
-                myUser.getPassword(),
-                authorities     
-        );
-        
+        //LoginUser额外携带id、角色和Token版本号，签发Token时写进Claims，之后的请求就不必再回表
+        return LoginUser.from(myUser);
+
     }
 
 
@@ -0,0 +1,21 @@
+-- 签发验证码：日上限检查 -> 冷却期 SET NX EX 抢占 -> 写入验证码 -> 当日计数，一次往返原子完成
+-- KEYS[1] 验证码key  KEYS[2] 冷却key  KEYS[3] 邮箱当日计数key  KEYS[4] IP当日计数key(可选，非请求线程时不传)
+-- ARGV[1] 验证码  ARGV[2] 验证码有效秒数  ARGV[3] 冷却秒数
+-- ARGV[4] 邮箱日上限  ARGV[5] IP日上限  ARGV[6] 当日计数key的过期秒数
+-- 返回 0 签发成功；-1 邮箱达日上限；-2 IP达日上限；大于0 为冷却剩余秒数
+if tonumber(redis.call('GET', KEYS[3]) or '0') >= tonumber(ARGV[4]) then
+    return -1
+end
+if KEYS[4] and tonumber(redis.call('GET', KEYS[4]) or '0') >= tonumber(ARGV[5]) then
+    return -2
+end
+if not redis.call('SET', KEYS[2], '1', 'NX', 'EX', ARGV[3]) then
+    return math.max(redis.call('TTL', KEYS[2]), 1)
+end
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+for i = 3, #KEYS do
+    if redis.call('INCR', KEYS[i]) == 1 then
+        redis.call('EXPIRE', KEYS[i], ARGV[6])
+    end
+end
+return 0
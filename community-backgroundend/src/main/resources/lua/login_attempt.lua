@@ -0,0 +1,13 @@
+-- 登录前占用一次尝试机会：已达上限直接返回锁定，否则计数+1，首次计数时设置过期，原子完成
+-- 并发的错误密码请求各占一次机会，最多只有上限次能走到校验密码
+-- KEYS[1] 失败计数key  ARGV[1] 最多尝试次数  ARGV[2] 过期秒数
+-- 返回 大于0 为占用后的计数；小于0 为已锁定，绝对值为剩余秒数
+local count = tonumber(redis.call('GET', KEYS[1]) or '0')
+if count >= tonumber(ARGV[1]) then
+    return -math.max(redis.call('TTL', KEYS[1]), 1)
+end
+count = redis.call('INCR', KEYS[1])
+if count == 1 then
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return count
@@ -0,0 +1,7 @@
+-- 释放锁：值还是自己的令牌才删除，锁已过期被别人拿到时不误删
+-- KEYS[1] 锁key  ARGV[1] 加锁时写入的令牌
+-- 返回 1 已释放；0 锁已不属于自己
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
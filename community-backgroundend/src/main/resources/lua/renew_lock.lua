@@ -0,0 +1,7 @@
+-- 续期锁：值还是自己的令牌才续期，锁已过期被别人拿到时不替别人续
+-- KEYS[1] 锁key  ARGV[1] 加锁时写入的令牌  ARGV[2] 新的过期秒数
+-- 返回 1 已续期；0 锁已不属于自己
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return 0
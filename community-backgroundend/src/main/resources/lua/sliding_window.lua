@@ -0,0 +1,17 @@
+-- 滑动窗口限流，一次往返完成 清理过期 -> 计数 -> 放行记账
+-- KEYS[1] 限流key(ZSET，成员为每次放行的请求，分数为毫秒时间戳)
+-- ARGV[1] 窗口毫秒数  ARGV[2] 窗口内上限  ARGV[3] 本次请求的唯一成员名
+-- 返回 0 表示放行，否则为还需等待的毫秒数
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local window = tonumber(ARGV[1])
+local limit = tonumber(ARGV[2])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - window)
+if redis.call('ZCARD', KEYS[1]) < limit then
+    redis.call('ZADD', KEYS[1], now, ARGV[3])
+    redis.call('PEXPIRE', KEYS[1], window)
+    return 0
+end
+local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+return math.max(tonumber(oldest[2]) + window - now, 1)
@@ -0,0 +1,13 @@
+-- 开始一轮浏览量写库：把累计中的hash整体改名为待写库的hash，并记下本轮批次号
+-- 上一轮未完成(待写库hash还在)时不改名，返回上一轮的批次号，继续写上一轮
+-- KEYS[1] 累计中hash  KEYS[2] 待写库hash  KEYS[3] 批次号key  ARGV[1] 新批次号
+-- 返回 本轮批次号，没有要写的返回nil
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return redis.call('GET', KEYS[3])
+end
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return false
+end
+redis.call('RENAME', KEYS[1], KEYS[2])
+redis.call('SET', KEYS[3], ARGV[1])
+return ARGV[1]
@@ -1,17 +1,86 @@
 package com.liu.springbootdemo;
 
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.liu.springbootdemo.POJO.entity.EmailOutbox;
+import com.liu.springbootdemo.common.enums.OutboxStatus;
+import com.liu.springbootdemo.mapper.EmailOutboxMapper;
+import com.liu.springbootdemo.service.EmailOutboxDispatcher;
 import com.liu.springbootdemo.service.EmailService;
+import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 
-@SpringBootTest
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// 邮件发到本地GreenMail(端口3025)，不再连真实的139邮箱
+@SpringBootTest(properties = {
+        "spring.mail.host=127.0.0.1",
+        "spring.mail.port=3025",
+        "spring.mail.properties.mail.smtp.ssl.enable=false"
+})
 public class MailTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());  // 接受任意账号密码
+
     @Autowired
     private EmailService emailService;
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    // 发件箱表不连数据库
+    @MockBean
+    private EmailOutboxMapper emailOutboxMapper;
+
+    @Test
+    public void testSendSimpleEmail() throws Exception {
+        when(emailOutboxMapper.insert(any())).thenReturn(1);
+        String code = emailService.generateVerificationCode();
+
+        // 1. 入发件箱
+        emailService.sendCode("todimstar@qq.com", code, null);
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(emailOutboxMapper).insert(captor.capture());
+        EmailOutbox mail = captor.getValue();
+        mail.setId(1L);
+        mail.setStatus(OutboxStatus.SENDING.getStatus());
+        mail.setOwner("batch-1");
+
+        // 2. 投递
+        emailOutboxDispatcher.deliver(List.of(mail));
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertTrue(received[0].getContent().toString().contains(code));
+        verify(emailOutboxMapper).markSent("batch-1", List.of(1L));
+    }
 
     @Test
-    public void testSendSimpleEmail() {
-        emailService.sendCode("todimstar@qq.com", emailService.generateVerificationCode(),null);
+    public void deliver_shouldScheduleRetryWhenSmtpDown() {
+        EmailOutbox mail = new EmailOutbox();
+        mail.setId(2L);
+        mail.setToAddress("todimstar@qq.com");
+        mail.setSubject("【TechForum】验证码");
+        mail.setContent("123456");
+        mail.setOwner("batch-2");
+        greenMail.stop();   // SMTP不可用
+
+        emailOutboxDispatcher.deliver(List.of(mail));
+
+        // 第一次失败：回到待发送，次数+1，不标记已发送
+        verify(emailOutboxMapper).markAttemptFailed(eq(2L), eq("batch-2"), eq(OutboxStatus.PENDING.getStatus()), eq(1), any(), anyString());
+        verify(emailOutboxMapper, never()).markSent(any(), any());
     }
 }
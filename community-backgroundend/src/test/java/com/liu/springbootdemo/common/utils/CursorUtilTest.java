@@ -0,0 +1,58 @@
+package com.liu.springbootdemo.common.utils;
+
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilTest {
+
+    @Test
+    void decode_shouldRestoreEncodedCursor() {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 4, 12, 30, 5);
+        assertEquals(new CursorUtil.TimeCursor(time, 42L), CursorUtil.decodeTime(CursorUtil.encodeTime(time, 42L)));
+        assertEquals(new CursorUtil.CategoryCursor(true, 7L), CursorUtil.decodeCategory(CursorUtil.encodeCategory(3L, true, 7L), 3L));
+        assertEquals(new CursorUtil.CategoryCursor(false, 8L), CursorUtil.decodeCategory(CursorUtil.encodeCategory(3L, false, 8L), 3L));
+        assertEquals(new CursorUtil.SearchCursor(1.25f, 9L), CursorUtil.decodeSearch(CursorUtil.encodeSearch(1.25f, 9L)));
+    }
+
+    @Test
+    void decode_shouldReturnNullForFirstPage() {
+        assertNull(CursorUtil.decodeTime(null));
+        assertNull(CursorUtil.decodeCategory("", 3L));
+        assertNull(CursorUtil.decodeSearch(" "));
+    }
+
+    @Test
+    void decode_shouldRejectInvalidCursor() {
+        String time = CursorUtil.encodeTime(LocalDateTime.of(2026, 1, 4, 12, 30), 1L);
+        String category = CursorUtil.encodeCategory(3L, false, 1L);
+        String search = CursorUtil.encodeSearch(1.5f, 1L);
+
+        assertInvalid(() -> CursorUtil.decodeTime("不是base64!"));
+        assertInvalid(() -> CursorUtil.decodeTime(category));               // 格式不对应
+        assertInvalid(() -> CursorUtil.decodeTime(raw("t|昨天|1")));
+        assertInvalid(() -> CursorUtil.decodeTime(raw("t|2026-01-04T12:30|1|2")));
+        assertInvalid(() -> CursorUtil.decodeCategory(category, 4L));       // 别的分区的游标
+        assertInvalid(() -> CursorUtil.decodeCategory(raw("c|3|2|1"), 3L));
+        assertInvalid(() -> CursorUtil.decodeCategory(raw("c|3|0|x"), 3L));
+        assertInvalid(() -> CursorUtil.decodeSearch(time));
+        assertInvalid(() -> CursorUtil.decodeSearch(raw("s|NaN|1")));
+        assertInvalid(() -> CursorUtil.decodeSearch(raw("s|Infinity|1")));
+        assertInvalid(() -> CursorUtil.decodeSearch(search.substring(0, search.length() - 2)));
+    }
+
+    private static String raw(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertInvalid(Runnable decode) {
+        BusinessException e = assertThrows(BusinessException.class, decode::run);
+        assertEquals(ErrorCode.PARAM_ERROR.getCode(), e.getCode());
+    }
+}
@@ -0,0 +1,70 @@
+package com.liu.springbootdemo.common.utils;
+
+import com.liu.springbootdemo.common.security.LoginUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private JwtUtil jwtUtil;
+
+    private final UserDetails userDetails = new User("testuser", "pwd",
+            List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+    @BeforeEach
+    void setUp() {
+        // 不启动Spring，手动模拟配置绑定后的初始化
+        jwtUtil = new JwtUtil();
+        jwtUtil.setSECRET_KEY("YourSuperSecureAndLongSecretKeyForThisCommunityTechForumProject");
+        jwtUtil.setEXPIRATION_TIME(60_000);
+        jwtUtil.init();
+    }
+
+    @Test
+    void parseToken_shouldVerifyOnceAndReuseClaims() {
+        String token = jwtUtil.generateToken(userDetails);
+
+        Claims first = jwtUtil.parseToken(token);
+        Claims second = jwtUtil.parseToken(token);
+
+        // 第二次命中缓存，拿到的是同一个Claims对象
+        assertSame(first, second);
+        assertEquals("testuser", first.getSubject());
+        assertTrue(jwtUtil.validateToken(first, userDetails));
+        assertEquals("testuser", jwtUtil.extractUsername(token));
+    }
+
+    @Test
+    void toLoginUser_shouldRebuildPrincipalFromClaims() {
+        LoginUser principal = new LoginUser(42L, "testuser", "hash", "ROLE_ADMIN", 3);
+        String token = jwtUtil.generateToken(principal);
+
+        LoginUser fromToken = jwtUtil.toLoginUser(jwtUtil.parseToken(token));
+
+        assertEquals(42L, fromToken.getId());
+        assertEquals("ROLE_ADMIN", fromToken.getRole());
+        assertEquals(3, fromToken.getTokenVersion());
+        assertNull(fromToken.getPassword());
+        // 旧版Token不带uid，返回null走回表认证
+        assertNull(jwtUtil.toLoginUser(jwtUtil.parseToken(jwtUtil.generateToken(userDetails))));
+    }
+
+    @Test
+    void parseToken_shouldStillRejectExpiredToken() {
+        jwtUtil.setEXPIRATION_TIME(-1_000);  // 签发即过期
+        String token = jwtUtil.generateToken(userDetails);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.parseToken(token));
+        // 过期Token不会被缓存，再次解析依旧抛异常
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.parseToken(token));
+    }
+}
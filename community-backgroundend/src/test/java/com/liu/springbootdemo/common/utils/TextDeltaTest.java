@@ -0,0 +1,51 @@
+package com.liu.springbootdemo.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDeltaTest {
+
+    @Test
+    void apply_shouldRestoreTarget() {
+        String[][] cases = {
+                {"hello world", "hello brave world"},   // 中间插入
+                {"hello brave world", "hello world"},   // 中间删除
+                {"abc", "xbc"},                         // 改开头
+                {"abc", "abx"},                         // 改结尾
+                {"", "new"},
+                {"old", ""},
+                {"aaa", "aaaa"},                        // 前后缀重叠
+                {"帖子正文😀第一段", "帖子正文😁第一段"},
+        };
+        for (String[] c : cases) {
+            assertEquals(c[1], TextDelta.apply(c[0], TextDelta.diff(c[0], c[1])), c[0] + " -> " + c[1]);
+        }
+    }
+
+    @Test
+    void diff_shouldOnlyKeepChangedPart() {
+        String base = "x".repeat(1000) + "old" + "y".repeat(1000);
+        String target = "x".repeat(1000) + "new" + "y".repeat(1000);
+
+        assertEquals("1000,1000,new", TextDelta.diff(base, target));
+    }
+
+    @Test
+    void diff_shouldNotSplitSurrogatePairs() {
+        String[][] cases = {
+                {"帖子正文😀第一段", "帖子正文😁第一段"},   // 同一高位代理，只差低位
+                {"😀😀", "😀😁"},
+                {"a😀b", "a😀😀b"},
+                {"😀x", "😁x"},
+        };
+        for (String[] c : cases) {
+            String delta = TextDelta.diff(c[0], c[1]);
+            String middle = delta.substring(delta.indexOf(',', delta.indexOf(',') + 1) + 1);
+            // 中间段要能完整编码成UTF-8，不能有落单的代理字符
+            assertTrue(middle.codePoints().noneMatch(cp -> Character.isSurrogate((char) cp) && cp <= Character.MAX_VALUE),
+                    c[0] + " -> " + c[1] + " 的差量中间段有落单的代理字符");
+            assertEquals(c[1], TextDelta.apply(c[0], delta));
+        }
+    }
+}
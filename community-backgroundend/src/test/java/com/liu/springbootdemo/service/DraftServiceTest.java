@@ -0,0 +1,208 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Category;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.common.enums.ErrorCode;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.common.exception.BusinessException;
+import com.liu.springbootdemo.common.security.LoginUser;
+import com.liu.springbootdemo.mapper.PostContentMapper;
+import com.liu.springbootdemo.mapper.PostMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DraftServiceTest {
+
+    private static final Long USER_ID = 9L;
+    private static final Long POST_ID = 100L;
+    private static final String DIRTY_KEY = "post:draft:dirty";
+    private static final String MEMBER = USER_ID + ":" + POST_ID;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @Mock
+    private RedisScript<Long> releaseLockScript;
+    @Mock
+    private PostMapper postMapper;
+    @Mock
+    private PostContentMapper postContentMapper;
+    @Mock
+    private PostCacheService postCacheService;
+    @Mock
+    private PostCountService postCountService;
+    @Mock
+    private CategoryRegistry categoryRegistry;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private PostSearchService postSearchService;
+
+    @InjectMocks
+    private DraftService draftService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(draftService, "lockSeconds", 10L);
+        ReflectionTestUtils.setField(draftService, "lockWaitMillis", 100L);
+        lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void flush_shouldSkipWhenNothingClaimed() {
+        when(zSetOperations.remove(DIRTY_KEY, MEMBER)).thenReturn(0L);
+
+        assertFalse(draftService.flush(draft()));
+
+        verify(hashOperations, never()).entries(anyString());
+        verify(postMapper, never()).saveDraft(anyLong(), any());
+        verifyUnlocked();
+    }
+
+    @Test
+    void flush_shouldPersistClaimedBuffer() {
+        claimBuffer();
+        when(postMapper.findBriefById(POST_ID)).thenReturn(draft());
+        when(postMapper.saveDraft(eq(POST_ID), any())).thenReturn(1);
+
+        assertTrue(draftService.flush(draft()));
+
+        verify(postContentMapper).upsert(POST_ID, "自动保存的正文");
+        verify(postContentMapper).clearPostsContent(POST_ID);
+        verify(postCacheService).evict(POST_ID);
+        verify(zSetOperations, never()).addIfAbsent(anyString(), anyString(), anyDouble());
+        verifyUnlocked();
+    }
+
+    @Test
+    void flush_shouldRequeueWhenPersistFails() {
+        claimBuffer();
+        when(postMapper.findBriefById(POST_ID)).thenReturn(draft());
+        when(postMapper.saveDraft(eq(POST_ID), any())).thenThrow(new IllegalStateException("数据库不可用"));
+
+        assertThrows(IllegalStateException.class, () -> draftService.flush(draft()));
+
+        // 认领时已从待写库集合摘掉，写库失败要放回去，否则缓冲里的内容再也不会写库
+        verify(zSetOperations).addIfAbsent(eq(DIRTY_KEY), eq(MEMBER), anyDouble());
+        verifyUnlocked();
+    }
+
+    @Test
+    void flush_shouldHoldLockUntilCallerRollsBackThenRequeue() {
+        claimBuffer();
+        when(postMapper.findBriefById(POST_ID)).thenReturn(draft());
+        when(postMapper.saveDraft(eq(POST_ID), any())).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertTrue(draftService.flush(draft()));
+        verify(stringRedisTemplate, never()).execute(eq(releaseLockScript), anyList(), any());
+
+        // 调用方(修改帖子)的事务回滚
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(zSetOperations).addIfAbsent(eq(DIRTY_KEY), eq(MEMBER), anyDouble());
+        verifyUnlocked();
+        verify(postCacheService, never()).evict(any());    // 没提交，不删缓存
+    }
+
+    @Test
+    void publish_shouldFailWhenRowIsNoLongerDraft() {
+        login();
+        when(postCacheService.getById(POST_ID)).thenReturn(draft());
+        when(zSetOperations.remove(DIRTY_KEY, MEMBER)).thenReturn(0L);
+        Post full = draft();
+        full.setTitle("标题");
+        full.setContent("正文");
+        full.setSummary("简介");
+        full.setCategoryId(1L);
+        when(postMapper.findById(POST_ID)).thenReturn(full);
+        when(categoryRegistry.getActive(1L)).thenReturn(new Category());
+        // 检查之后被作者删除了
+        when(postMapper.publishDraft(POST_ID)).thenReturn(0);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> draftService.publish(POST_ID));
+
+        assertEquals(ErrorCode.POST_NOT_FOUND.getCode(), e.getCode());
+        verify(postMapper, never()).updateStatus(anyLong(), anyInt());
+        verify(postCountService, never()).onStatusChange(any(), anyInt());
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verifyUnlocked();
+    }
+
+    private void claimBuffer() {
+        when(zSetOperations.remove(DIRTY_KEY, MEMBER)).thenReturn(1L);
+        when(hashOperations.entries("post:draft:" + MEMBER)).thenReturn(Map.of(
+                "title", "标题", "content", "自动保存的正文", "summary", "", "coverImage", "", "categoryId", "",
+                "savedAt", "0"));
+    }
+
+    private void verifyUnlocked() {
+        verify(stringRedisTemplate).execute(eq(releaseLockScript), eq(List.of("post:draft:lock:" + MEMBER)), anyString());
+    }
+
+    private static void login() {
+        LoginUser user = new LoginUser(USER_ID, "author", null, "ROLE_USER", 0);
+        // 装一个新的上下文，别改可能被别的测试留在线程上的那个
+        SecurityContextHolder.setContext(new SecurityContextImpl(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())));
+    }
+
+    private static Post draft() {
+        Post post = new Post();
+        post.setId(POST_ID);
+        post.setUserId(USER_ID);
+        post.setStatus(PostStatus.DRAFT.getStatus());
+        return post;
+    }
+}
@@ -0,0 +1,121 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.mapper.PostMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotPostServiceTest {
+
+    private static final double GRAVITY = 1.8;
+
+    @Mock
+    private PostMapper postMapper;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private StringRedisConnection connection;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @InjectMocks
+    private HotPostService hotPostService;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动Spring，手动设置@Value的配置
+        ReflectionTestUtils.setField(hotPostService, "gravity", GRAVITY);
+        ReflectionTestUtils.setField(hotPostService, "likeWeight", 3.0);
+        ReflectionTestUtils.setField(hotPostService, "commentWeight", 5.0);
+        ReflectionTestUtils.setField(hotPostService, "viewWeight", 0.1);
+        ReflectionTestUtils.setField(hotPostService, "windowDays", 7);
+        ReflectionTestUtils.setField(hotPostService, "maxSize", 2);
+        lenient().when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+    }
+
+    @Test
+    void mergeToRedis_shouldAddDecayedIncrements() {
+        Post post = post(1L, 10, 0, 0, 0);
+        hotPostService.onComment(post);
+        hotPostService.onView(post);
+
+        hotPostService.mergeToRedis();
+
+        // 发布10小时：(5 + 0.1) / (10 + 2)^1.8，同一帖子的增量合并成一次ZINCRBY
+        ArgumentCaptor<Double> delta = ArgumentCaptor.forClass(Double.class);
+        verify(connection).zIncrBy(eq("post:hot"), delta.capture(), eq("1"));
+        assertEquals(5.1 / Math.pow(12, GRAVITY), delta.getValue(), 1e-6);
+    }
+
+    @Test
+    void onView_shouldIgnoreUnpublishedAndExpiredPosts() {
+        Post draft = post(1L, 1, 0, 0, 0);
+        draft.setStatus(PostStatus.DRAFT.getStatus());
+        hotPostService.onView(draft);
+        hotPostService.onView(post(2L, 24 * 8, 0, 0, 0));   // 超出7天窗口
+
+        hotPostService.mergeToRedis();
+
+        verify(connection, never()).zIncrBy(anyString(), anyDouble(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rescore_shouldScoreByFormulaAndKeepTopPosts() {
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(postMapper.findHotCandidates(any())).thenReturn(List.of(
+                post(1L, 0, 10, 0, 0),        // 刚发布：30 / 2^1.8
+                post(2L, 48, 10, 10, 100),    // 两天前：(30 + 50 + 10) / 50^1.8
+                post(3L, 1, 0, 0, 1)));       // 分数最低，超出max-size被截掉
+
+        hotPostService.rescore();
+
+        ArgumentCaptor<Set<ZSetOperations.TypedTuple<String>>> captor = ArgumentCaptor.forClass(Set.class);
+        verify(zSetOperations).add(anyString(), captor.capture());
+        Map<String, Double> scores = new HashMap<>();
+        captor.getValue().forEach(tuple -> scores.put(tuple.getValue(), tuple.getScore()));
+        assertEquals(Set.of("1", "2"), scores.keySet());
+        assertEquals(30 / Math.pow(2, GRAVITY), scores.get("1"), 1e-6);
+        assertEquals(90 / Math.pow(50, GRAVITY), scores.get("2"), 1e-6);
+        verify(stringRedisTemplate).rename(anyString(), eq("post:hot"));
+    }
+
+    private static Post post(Long id, int ageHours, int likes, int comments, int views) {
+        Post post = new Post();
+        post.setId(id);
+        post.setStatus(PostStatus.PUBLISHED.getStatus());
+        post.setCreateTime(LocalDateTime.now().minusHours(ageHours));
+        post.setLikeCount(likes);
+        post.setCommentCount(comments);
+        post.setViewCount(views);
+        return post;
+    }
+}
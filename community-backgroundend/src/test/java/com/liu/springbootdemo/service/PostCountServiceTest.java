@@ -0,0 +1,115 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostCountServiceTest {
+
+    private static final String KEY = "post:counts";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private StringRedisConnection connection;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @InjectMocks
+    private PostCountService postCountService;
+
+    @BeforeEach
+    void setUp() {
+        // 管道里的HINCRBY落到模拟连接上，按字段校验增量
+        lenient().when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    @Test
+    void onStatusChange_shouldMoveStatusCategoryAndUserFields() {
+        postCountService.onStatusChange(post(9L, 5L, PostStatus.DRAFT), PostStatus.PUBLISHED.getStatus());
+
+        int draft = PostStatus.DRAFT.getStatus();
+        int published = PostStatus.PUBLISHED.getStatus();
+        verify(connection).hIncrBy(KEY, "s:" + draft, -1L);
+        verify(connection).hIncrBy(KEY, "s:" + published, 1L);
+        verify(connection).hIncrBy(KEY, "c:5:" + draft, -1L);
+        verify(connection).hIncrBy(KEY, "c:5:" + published, 1L);
+        verify(connection).hIncrBy(KEY, "u:9:" + draft, -1L);
+        verify(connection).hIncrBy(KEY, "u:9:" + published, 1L);
+        verifyNoMoreInteractions(connection);
+    }
+
+    @Test
+    void onStatusChange_shouldSkipWhenStatusUnchanged() {
+        postCountService.onStatusChange(post(9L, 5L, PostStatus.PUBLISHED), PostStatus.PUBLISHED.getStatus());
+
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void onCategoryChange_shouldOnlyMoveCategoryField() {
+        int published = PostStatus.PUBLISHED.getStatus();
+        postCountService.onCategoryChange(post(9L, 5L, PostStatus.PUBLISHED), 6L);
+
+        verify(connection).hIncrBy(KEY, "c:5:" + published, -1L);
+        verify(connection).hIncrBy(KEY, "c:6:" + published, 1L);
+        verifyNoMoreInteractions(connection);
+    }
+
+    @Test
+    void countByUser_shouldSumVisibleStatuses() {
+        // 游客只看已发布
+        when(hashOperations.multiGet(eq(KEY), any())).thenReturn(Arrays.asList("1", "3"));
+        assertEquals(3L, postCountService.countByUser(9L, false, false));
+        verify(hashOperations).multiGet(KEY, List.of("ready", "u:9:" + PostStatus.PUBLISHED.getStatus()));
+
+        // 作者本人看除已删除外的全部状态，并发增减造成的负数按0算
+        int visible = PostStatus.values().length - 1;
+        Object[] values = new Object[visible + 1];
+        values[0] = "1";
+        Arrays.fill(values, 1, values.length, "-1");
+        when(hashOperations.multiGet(eq(KEY), argThat(fields -> fields.size() == visible + 1
+                && !fields.contains("u:9:" + PostStatus.DELETED.getStatus())))).thenReturn(Arrays.asList(values));
+        assertEquals(0L, postCountService.countByUser(9L, false, true));
+    }
+
+    @Test
+    void count_shouldReturnNullBeforeReconciled() {
+        when(hashOperations.multiGet(eq(KEY), any())).thenReturn(Arrays.asList(null, "7"));
+
+        assertNull(postCountService.countPublished());
+        verify(connection, never()).hIncrBy(anyString(), anyString(), anyLong());
+    }
+
+    private static Post post(Long userId, Long categoryId, PostStatus status) {
+        Post post = new Post();
+        post.setUserId(userId);
+        post.setCategoryId(categoryId);
+        post.setStatus(status.getStatus());
+        return post;
+    }
+}
@@ -0,0 +1,221 @@
+package com.liu.springbootdemo.service;
+
+import com.liu.springbootdemo.POJO.Result.CursorPageResult;
+import com.liu.springbootdemo.POJO.entity.Post;
+import com.liu.springbootdemo.POJO.vo.PostSearchVO;
+import com.liu.springbootdemo.POJO.vo.PostSummaryVO;
+import com.liu.springbootdemo.common.enums.PostStatus;
+import com.liu.springbootdemo.mapper.PostMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 在临时目录上建真实的Lucene索引，数据库和Redis用Mock
+ */
+@ExtendWith(MockitoExtension.class)
+class PostSearchServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @TempDir
+    Path indexDir;
+
+    @Mock
+    private PostMapper postMapper;
+    @Mock
+    private PostCacheService postCacheService;
+    @Mock
+    private UserSummaryLoader userSummaryLoader;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private PostSearchService postSearchService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(postSearchService, "indexDir", indexDir.toString());
+        ReflectionTestUtils.setField(postSearchService, "reindexThreads", 2);
+        ReflectionTestUtils.setField(postSearchService, "fragmentSize", 100);
+        ReflectionTestUtils.setField(postSearchService, "catchUpOverlapMillis", 300_000L);
+        postSearchService.init();
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        // 概要缓存原样按id返回，作者不填
+        lenient().when(postCacheService.getSummaries(anyList())).thenAnswer(invocation -> {
+            List<PostSummaryVO> summaries = new ArrayList<>();
+            for (Long id : invocation.<List<Long>>getArgument(0)) {
+                PostSummaryVO summary = new PostSummaryVO();
+                summary.setId(id);
+                summaries.add(summary);
+            }
+            return summaries;
+        });
+        lenient().when(userSummaryLoader.fillAuthors(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        postSearchService.shutdown();
+    }
+
+    @Test
+    void search_shouldPageThroughTiesByIdDescending() {
+        reindex(List.of(post(1L), post(2L), post(3L), post(4L), post(5L)));
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageResult<PostSearchVO> page = postSearchService.search("数据库索引", null, cursor, 2);
+            page.getResults().forEach(hit -> ids.add(hit.getPost().getId()));
+            assertEquals(page.isHasMore(), page.getNextCursor() != null);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // 文本相同相关度相同，按id倒序，翻页不重不漏
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), ids);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void reindex_shouldNotResurrectPostDeletedDuringRound() throws Exception {
+        CountDownLatch deleted = new CountDownLatch(1);
+        Post gone = post(3L);
+        gone.setStatus(PostStatus.DELETED.getStatus());
+        when(postMapper.findById(3L)).thenAnswer(invocation -> {
+            deleted.countDown();
+            return gone;
+        });
+        List<Post> snapshot = List.of(post(1L), post(2L), post(3L), post(4L));
+        Iterator<Post> source = snapshot.iterator();
+        // 流读到帖子3之前它被删除，增量先删了文档，流里的还是删除前的快照
+        Iterator<Post> racing = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Post next() {
+                Post post = source.next();
+                if (post.getId() == 3L) {
+                    postSearchService.onMessage(new DefaultMessage(
+                            "post:search:changed".getBytes(StandardCharsets.UTF_8), "3".getBytes(StandardCharsets.UTF_8)), null);
+                    try {
+                        assertTrue(deleted.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return post;
+            }
+        };
+        reindex(racing);
+        awaitUpdater();
+        postSearchService.refresh();
+
+        assertEquals(List.of(4L, 2L, 1L), searchAll());
+    }
+
+    @Test
+    void catchUp_shouldReplayChangesSinceCommittedMarkAfterRestart() throws Exception {
+        reindex(List.of(post(1L), post(2L)));
+        // 重启：关闭时落盘，打开时从commit里读回追到的时间
+        postSearchService.shutdown();
+        postSearchService.init();
+        assertEquals(T0, ReflectionTestUtils.getField(postSearchService, "caughtUpTo"));
+
+        // 停机期间帖子2被删除、帖子6发布
+        Post gone = post(2L);
+        gone.setStatus(PostStatus.DELETED.getStatus());
+        when(postMapper.currentTime()).thenReturn(T0.plusHours(1));
+        Cursor<Post> changed = cursor(List.of(gone, post(6L)).iterator());
+        when(postMapper.streamChangedSince(T0.minusMinutes(5))).thenReturn(changed);
+
+        ReflectionTestUtils.invokeMethod(postSearchService, "catchUp");
+
+        assertEquals(List.of(6L, 1L), searchAll());
+        assertEquals(T0.plusHours(1), ReflectionTestUtils.getField(postSearchService, "caughtUpTo"));
+    }
+
+    private void reindex(List<Post> posts) {
+        reindex(posts.iterator());
+    }
+
+    private void reindex(Iterator<Post> posts) {
+        Cursor<Post> published = cursor(posts);
+        when(postMapper.currentTime()).thenReturn(T0);
+        when(postMapper.streamPublished()).thenReturn(published);
+        ReflectionTestUtils.invokeMethod(postSearchService, "reindex");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<Post> cursor(Iterator<Post> posts) {
+        Cursor<Post> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(posts);
+        return cursor;
+    }
+
+    // 单线程的更新队列里排一个空任务，等前面的都执行完
+    private void awaitUpdater() throws Exception {
+        ExecutorService updater = (ExecutorService) ReflectionTestUtils.getField(postSearchService, "updater");
+        updater.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private List<Long> searchAll() {
+        return postSearchService.search("数据库索引", null, null, 100).getResults().stream()
+                .map(hit -> hit.getPost().getId())
+                .toList();
+    }
+
+    private static Post post(Long id) {
+        Post post = new Post();
+        post.setId(id);
+        post.setCategoryId(1L);
+        post.setCategoryName("技术");
+        post.setStatus(PostStatus.PUBLISHED.getStatus());
+        post.setTitle("数据库索引");
+        post.setSummary("简介");
+        post.setContent("联合索引的最左前缀");
+        return post;
+    }
+}
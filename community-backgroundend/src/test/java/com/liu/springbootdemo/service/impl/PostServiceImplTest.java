@@ -1,9 +1,16 @@
 package com.liu.springbootdemo.service.impl;
 
 import com.liu.springbootdemo.POJO.dto.CreatePostDTO;
+import com.liu.springbootdemo.POJO.entity.Category;
 import com.liu.springbootdemo.POJO.entity.Post;
-import com.liu.springbootdemo.POJO.entity.User;
+import com.liu.springbootdemo.common.security.LoginUser;
+import com.liu.springbootdemo.converter.PostConverter;
+import com.liu.springbootdemo.mapper.PostContentMapper;
 import com.liu.springbootdemo.mapper.PostMapper;
+import com.liu.springbootdemo.service.CategoryRegistry;
+import com.liu.springbootdemo.service.PostCacheService;
+import com.liu.springbootdemo.service.PostCountService;
+import com.liu.springbootdemo.service.PostSearchService;
 import com.liu.springbootdemo.common.utils.SecurityUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +27,24 @@ class PostServiceImplTest {
     @Mock
     private PostMapper postMapper;
 
+    @Mock
+    private PostContentMapper postContentMapper;
+
+    @Mock
+    private CategoryRegistry categoryRegistry;
+
+    @Mock
+    private PostConverter postConverter;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private PostCountService postCountService;
+
+    @Mock
+    private PostSearchService postSearchService;
+
 
 //    // @Mock: 我们需要模拟 SecurityContext 和 Authentication
 //    @Mock
@@ -54,25 +79,20 @@ class PostServiceImplTest {
         postFromClient.setTitle("Test Title");
         postFromClient.setContent("Test Content");
 
-        // b. 准备一个PostVO对象，模拟从数据库返回的帖子数据
-        Post postVO = new Post();
-        postVO.setId(1L);
-        postVO.setTitle("Test Title");
-        postVO.setContent("Test Content");
-
-        // c. 准备模拟的UserDetails和User对象，代表当前登录的用户
-        User currentUser = new User();
-        currentUser.setId(123L); // 设定一个明确的用户ID
-        currentUser.setUsername("testuser");
+        // b. 准备模拟的认证主体，代表当前登录的用户(来自Token，不查库)
+        LoginUser currentUser = new LoginUser(123L, "testuser", null, "ROLE_USER", 0); // 设定一个明确的用户ID
 
 
         // c. 定义关键的模拟行为
         MockedStatic<SecurityUtil> mockSecurityUtil = Mockito.mockStatic(SecurityUtil.class);
 
-        //在任何代码调用SecurityUtil.getCurrentUser()时，返回我们Mock的currentUser
-        mockSecurityUtil.when(SecurityUtil::getCurrentUser).thenReturn(currentUser);
-        //在任何代码调用postMapper.findById()时，返回我们Mock的postFromClient
-        when(postMapper.findById(any())).thenReturn(postVO);
+        //在任何代码调用SecurityUtil.getLoginUser()时，返回我们Mock的currentUser
+        mockSecurityUtil.when(SecurityUtil::getLoginUser).thenReturn(currentUser);
+        //分区可用，插入成功
+        Category category = new Category();
+        category.setName("Test Category");
+        when(categoryRegistry.getActive(any())).thenReturn(category);
+        when(postMapper.insert(any())).thenReturn(1);
 
         /*更改了用户获取方法，所以改成以上模拟静态SecurityUtil方法*/
 //        UserDetails userDetails = mock(UserDetails.class); //直接用mock()方法创建一个UserDetails的模拟对象
@@ -96,5 +116,13 @@ class PostServiceImplTest {
         assertEquals(123L, savedPost.getUserId());
         // c. (可选) 验证标题和内容也正确传递了
         assertEquals("Test Title", savedPost.getTitle());
+        assertEquals("Test Category", savedPost.getCategoryName());
+        // d. 正文写入单独的post_contents表
+        verify(postContentMapper).upsert(savedPost.getId(), "Test Content");
+        // e. 返回值直接由写入的对象转换，不回查数据库
+        verify(postMapper, never()).findById(any());
+
+        // 静态Mock绑在当前线程上，不关掉会带到同线程后面的测试里
+        mockSecurityUtil.close();
     }
 }
\ No newline at end of file